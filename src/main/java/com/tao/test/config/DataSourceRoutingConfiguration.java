@@ -0,0 +1,86 @@
+package com.tao.test.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * With app.datasource.routing.enabled, read-only transactions go to the replicas listed in
+ * app.datasource.replica.urls (comma separated, same driver, credentials from
+ * app.datasource.replica.username and password) and everything else to spring.datasource.
+ * Replicas share the spring.datasource.hikari settings, with app.datasource.replica.pool-size
+ * connections each and app.datasource.replica.connection-timeout so a dead one is noticed quickly.
+ * app.datasource.read-your-writes pins a client to the primary for that many milliseconds after a
+ * write, 0 disables it. Two local databases work too, e.g. a replica url naming the same H2 in-memory
+ * database as the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfiguration {
+
+	private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+
+	@Bean(destroyMethod = "close")
+	public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties,
+			Environment environment,
+			@Value("${app.datasource.replica.urls}") String[] urls,
+			@Value("${app.datasource.replica.username:${spring.datasource.username}}") String username,
+			@Value("${app.datasource.replica.password:${spring.datasource.password}}") String password,
+			@Value("${app.datasource.replica.pool-size:10}") int poolSize,
+			@Value("${app.datasource.replica.connection-timeout:2000}") long connectionTimeout) {
+		Binder binder = Binder.get(environment);
+		HikariDataSource primary = properties.initializeDataSourceBuilder()
+				.type(HikariDataSource.class).build();
+		binder.bind(HIKARI_PREFIX, Bindable.ofInstance(primary));
+		primary.setPoolName("primary");
+		List<HikariDataSource> replicas = new ArrayList<>();
+		for (String url : urls) {
+			if (url.trim().isEmpty()) {
+				continue;
+			}
+			HikariDataSource replica = new HikariDataSource();
+			binder.bind(HIKARI_PREFIX, Bindable.ofInstance(replica));
+			replica.setDriverClassName(properties.determineDriverClassName());
+			replica.setJdbcUrl(url.trim());
+			replica.setUsername(username);
+			replica.setPassword(password);
+			replica.setMaximumPoolSize(poolSize);
+			replica.setConnectionTimeout(connectionTimeout);
+			replica.setReadOnly(true);
+			// A replica down at startup is retried by the health checks instead of failing the pool
+			replica.setInitializationFailTimeout(-1);
+			replica.setPoolName("replica-" + (replicas.size() + 1));
+			replicas.add(replica);
+		}
+		return new ReplicaRoutingDataSource(primary, replicas);
+	}
+
+	@Bean
+	@Primary
+	public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+		return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+	}
+
+	@Bean
+	public FilterRegistrationBean<ReadYourWrites> readYourWrites(
+			@Value("${app.datasource.read-your-writes:5000}") long windowMillis) {
+		FilterRegistrationBean<ReadYourWrites> registration = new FilterRegistrationBean<>(
+				new ReadYourWrites(windowMillis));
+		registration.setEnabled(windowMillis > 0);
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+		return registration;
+	}
+}
@@ -0,0 +1,34 @@
+package com.tao.test.config;
+
+import java.util.Date;
+import java.util.TimeZone;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.Formatter;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.datetime.DateFormatter;
+import org.springframework.format.datetime.DateTimeFormatAnnotationFormatterFactory;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Parses @DateTimeFormat Date parameters in TIME_ZONE instead of the zone of the server, the same
+ * zone request bodies name in @JsonFormat and responses are written in.
+ */
+@Configuration
+public class DateFormatConfiguration implements WebMvcConfigurer {
+
+	public static final String TIME_ZONE = "UTC";
+
+	@Override
+	public void addFormatters(FormatterRegistry registry) {
+		// Added after the default factory, so it takes precedence for the same annotation
+		registry.addFormatterForFieldAnnotation(new DateTimeFormatAnnotationFormatterFactory() {
+			@Override
+			protected Formatter<Date> getFormatter(DateTimeFormat annotation, Class<?> fieldType) {
+				DateFormatter formatter = (DateFormatter) super.getFormatter(annotation, fieldType);
+				formatter.setTimeZone(TimeZone.getTimeZone(TIME_ZONE));
+				return formatter;
+			}
+		});
+	}
+}
@@ -0,0 +1,88 @@
+package com.tao.test.config;
+
+import com.tao.test.domain.enums.IdStorage;
+import java.util.Collections;
+import java.util.Iterator;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.jpa.boot.spi.TypeContributorList;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.Property;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.type.AbstractSingleColumnStandardBasicType;
+import org.hibernate.type.UUIDBinaryType;
+import org.hibernate.type.UUIDCharType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the "app-uuid" Hibernate type used by the UUID columns.
+ * app.id.storage=CHAR keeps the original 36 character layout, BINARY stores the ids as BINARY(16).
+ * Existing CHAR tables are converted with db/migration/uuid-char-to-binary.mysql.sql.
+ */
+@Configuration
+public class IdStorageConfiguration {
+
+	public static final String UUID_TYPE = "app-uuid";
+	private static final int BINARY_UUID_LENGTH = 16;
+
+	@Bean
+	public HibernatePropertiesCustomizer idStorageCustomizer(
+			@Value("${app.id.storage:CHAR}") IdStorage storage) {
+		AbstractSingleColumnStandardBasicType<?> type = storage == IdStorage.BINARY
+				? UUIDBinaryType.INSTANCE : UUIDCharType.INSTANCE;
+		return properties -> {
+			properties.put(EntityManagerFactoryBuilderImpl.TYPE_CONTRIBUTORS,
+					(TypeContributorList) () -> Collections.singletonList(
+							(contributions, serviceRegistry) -> contributions.contributeType(type,
+									UUID_TYPE)));
+			if (storage == IdStorage.BINARY) {
+				properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+						(IntegratorProvider) () -> Collections.singletonList(
+								new BinaryUuidColumnIntegrator()));
+			}
+		};
+	}
+
+	/**
+	 * Sizes binary UUID columns to 16 bytes, the dialects would otherwise generate binary(255)
+	 */
+	static class BinaryUuidColumnIntegrator implements Integrator {
+
+		@Override
+		public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+				SessionFactoryServiceRegistry serviceRegistry) {
+			for (PersistentClass entity : metadata.getEntityBindings()) {
+				resize(entity.getIdentifierProperty());
+				Iterator<?> properties = entity.getPropertyIterator();
+				while (properties.hasNext()) {
+					resize((Property) properties.next());
+				}
+			}
+		}
+
+		private void resize(Property property) {
+			if (property == null || !(property.getType() instanceof UUIDBinaryType)) {
+				return;
+			}
+			Iterator<?> columns = property.getColumnIterator();
+			while (columns.hasNext()) {
+				Object column = columns.next();
+				if (column instanceof Column) {
+					((Column) column).setLength(BINARY_UUID_LENGTH);
+				}
+			}
+		}
+
+		@Override
+		public void disintegrate(SessionFactoryImplementor sessionFactory,
+				SessionFactoryServiceRegistry serviceRegistry) {
+		}
+	}
+}
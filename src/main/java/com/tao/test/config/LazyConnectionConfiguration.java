@@ -0,0 +1,42 @@
+package com.tao.test.config;
+
+import javax.sql.DataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Puts a LazyConnectionDataSourceProxy in front of the dataSource bean, unless it already is one as
+ * with replica routing, so a transaction takes a connection at its first statement. Transactions
+ * answered from the near cache or the id filters then never reach the database.
+ */
+@Configuration
+public class LazyConnectionConfiguration {
+
+	@Bean
+	public static BeanPostProcessor lazyConnectionDataSource() {
+		return new LazyConnectionPostProcessor();
+	}
+
+	/**
+	 * Ordered so it runs before the diagnostics wrapper, which then sees the proxy
+	 */
+	private static final class LazyConnectionPostProcessor implements BeanPostProcessor, Ordered {
+
+		@Override
+		public Object postProcessAfterInitialization(Object bean, String beanName) {
+			if ("dataSource".equals(beanName) && bean instanceof DataSource
+					&& !(bean instanceof LazyConnectionDataSourceProxy)) {
+				return new LazyConnectionDataSourceProxy((DataSource) bean);
+			}
+			return bean;
+		}
+
+		@Override
+		public int getOrder() {
+			return Ordered.HIGHEST_PRECEDENCE;
+		}
+	}
+}
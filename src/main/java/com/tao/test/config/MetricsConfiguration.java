@@ -0,0 +1,20 @@
+package com.tao.test.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Times beans annotated with @Timed, see ProductServiceImpl.
+ * Endpoints are timed by http.server.requests, repository methods by spring.data.repository.invocations,
+ * both with percentile histograms from application.properties.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+	@Bean
+	public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+		return new TimedAspect(meterRegistry);
+	}
+}
@@ -0,0 +1,125 @@
+package com.tao.test.config;
+
+import com.tao.test.domain.enums.IdStorage;
+import com.tao.test.domain.enums.Status;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Seeds app.perf.products products, created over the last three years, before the search index and
+ * the feed load. app.perf.approval-backlog of them wait in the approval queue, app.perf.inactive-ratio
+ * and app.perf.rejected-ratio of the others are INACTIVE or REJECTED and the rest is ACTIVE.
+ * Names are two of WORDS followed by the row number. Skipped when the database already has products.
+ */
+@Component
+@Profile("perf")
+@Slf4j
+public class PerfDataSeeder implements ApplicationRunner {
+
+	public static final String[] WORDS = {"amber", "birch", "cobalt", "delta", "ember", "fjord",
+			"granite", "harbor", "indigo", "juniper", "kelp", "lumen", "maple", "nickel", "onyx",
+			"pepper", "quartz", "russet", "sable", "tundra"};
+
+	private static final int CHUNK_SIZE = 5000;
+	private static final long SPAN_MILLIS = TimeUnit.DAYS.toMillis(3 * 365);
+
+	private final JdbcTemplate jdbcTemplate;
+	private final IdStorage idStorage;
+	private final int products;
+	private final int approvalBacklog;
+	private final double inactiveRatio;
+	private final double rejectedRatio;
+	private final double maxAutoApprovePrice;
+
+	@Autowired
+	public PerfDataSeeder(JdbcTemplate jdbcTemplate,
+			@Value("${app.id.storage:CHAR}") IdStorage idStorage,
+			@Value("${app.perf.products:10000}") int products,
+			@Value("${app.perf.approval-backlog:500}") int approvalBacklog,
+			@Value("${app.perf.inactive-ratio:0.05}") double inactiveRatio,
+			@Value("${app.perf.rejected-ratio:0.05}") double rejectedRatio,
+			@Value("${app.max.auto-approve.price}") double maxAutoApprovePrice) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.idStorage = idStorage;
+		this.products = products;
+		this.approvalBacklog = Math.min(approvalBacklog, products);
+		this.inactiveRatio = inactiveRatio;
+		this.rejectedRatio = rejectedRatio;
+		this.maxAutoApprovePrice = maxAutoApprovePrice;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		Long existing = this.jdbcTemplate.queryForObject("select count(*) from product", Long.class);
+		if (existing != null && existing > 0) {
+			log.warn("Database already holds {} products, not seeding", existing);
+			return;
+		}
+		long start = System.currentTimeMillis();
+		Random random = new Random(42);
+		int autoApprovedRange = (int) Math.max(1, this.maxAutoApprovePrice);
+		List<Object[]> products = new ArrayList<>(CHUNK_SIZE);
+		List<Object[]> approvals = new ArrayList<>();
+		for (int i = 0; i < this.products; i++) {
+			long createdOn = start - (long) (random.nextDouble() * SPAN_MILLIS);
+			UUID productId = uuidAt(createdOn, random);
+			// Spreads the backlog evenly over the rows
+			boolean pending = (long) (i + 1) * this.approvalBacklog / this.products
+					> (long) i * this.approvalBacklog / this.products;
+			double draw = random.nextDouble();
+			Status status = pending ? Status.PENDING_APPROVAL
+					: draw < this.inactiveRatio ? Status.INACTIVE
+					: draw < this.inactiveRatio + this.rejectedRatio ? Status.REJECTED : Status.ACTIVE;
+			double price = pending ? this.maxAutoApprovePrice + 1 + random.nextInt(autoApprovedRange)
+					: 1 + random.nextInt(autoApprovedRange);
+			String name = WORDS[random.nextInt(WORDS.length)] + " "
+					+ WORDS[random.nextInt(WORDS.length)] + " " + i;
+			products.add(new Object[] {id(productId), name, price, status.ordinal(),
+					new Timestamp(createdOn), new Timestamp(createdOn)});
+			if (pending) {
+				approvals.add(new Object[] {id(uuidAt(createdOn, random)), id(productId),
+						new Timestamp(createdOn)});
+			}
+			if (products.size() == CHUNK_SIZE) {
+				flush(products, approvals);
+			}
+		}
+		flush(products, approvals);
+		log.info("Seeded {} products, {} of them in the approval queue, in {} ms", this.products,
+				this.approvalBacklog, System.currentTimeMillis() - start);
+	}
+
+	private void flush(List<Object[]> products, List<Object[]> approvals) {
+		this.jdbcTemplate.batchUpdate("insert into product (product_id, name, price, status, "
+				+ "created_on, updated_on) values (?, ?, ?, ?, ?, ?)", products);
+		this.jdbcTemplate.batchUpdate("insert into approval_queue (approval_id, product_id, "
+				+ "request_date) values (?, ?, ?)", approvals);
+		products.clear();
+		approvals.clear();
+	}
+
+	/**
+	 * Same layout as TimeOrderedUuidGenerator, for a timestamp in the past
+	 */
+	private static UUID uuidAt(long millis, Random random) {
+		long msb = (millis << 16) | 0x7000L | (random.nextInt() & 0x0FFFL);
+		long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(msb, lsb);
+	}
+
+	private Object id(UUID id) {
+		return this.idStorage.toJdbc(id);
+	}
+}
@@ -0,0 +1,49 @@
+package com.tao.test.config;
+
+import com.tao.test.service.diagnostics.InstrumentedDataSource;
+import com.tao.test.service.diagnostics.QueryStatistics;
+import com.tao.test.service.diagnostics.RequestStatements;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Wraps the dataSource bean in an InstrumentedDataSource and counts statements per request, unless
+ * app.diagnostics.enabled is false. With replica routing that is the routing proxy, so statements
+ * are seen once whichever database runs them.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.diagnostics.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryDiagnosticsConfiguration {
+
+	@Bean
+	public static BeanPostProcessor instrumentedDataSource(
+			ObjectProvider<QueryStatistics> queryStatistics) {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if ("dataSource".equals(beanName) && bean instanceof DataSource
+						&& !(bean instanceof InstrumentedDataSource)) {
+					return new InstrumentedDataSource((DataSource) bean,
+							queryStatistics.getObject());
+				}
+				return bean;
+			}
+		};
+	}
+
+	@Bean
+	public FilterRegistrationBean<RequestStatements> requestStatements(
+			QueryStatistics queryStatistics) {
+		FilterRegistrationBean<RequestStatements> registration = new FilterRegistrationBean<>(
+				new RequestStatements(queryStatistics));
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+		return registration;
+	}
+}
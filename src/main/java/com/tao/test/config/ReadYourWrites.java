@@ -0,0 +1,89 @@
+package com.tao.test.config;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Pins a client to the primary for a window after its own write, so it reads what it wrote even when
+ * the replicas lag. Every request other than GET, HEAD and OPTIONS sets a cookie with the end of the
+ * window; requests carrying an unexpired one route their reads to the primary.
+ */
+public class ReadYourWrites extends OncePerRequestFilter {
+
+	public static final String COOKIE = "primary-until";
+
+	private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+	private final long windowMillis;
+
+	public ReadYourWrites(long windowMillis) {
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * @return true when reads of the current thread must go to the primary
+	 */
+	public static boolean isPinned() {
+		return Boolean.TRUE.equals(PINNED.get());
+	}
+
+	/**
+	 * @return work running with the pin of the calling thread, for work handed to another thread
+	 */
+	public static <T> Supplier<T> propagate(Supplier<T> work) {
+		if (!isPinned()) {
+			return work;
+		}
+		return () -> {
+			PINNED.set(Boolean.TRUE);
+			try {
+				return work.get();
+			} finally {
+				PINNED.remove();
+			}
+		};
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+			FilterChain filterChain) throws ServletException, IOException {
+		long now = System.currentTimeMillis();
+		String method = request.getMethod();
+		if (!"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method)) {
+			// Set before the chain, asynchronous endpoints commit the response after it returns
+			Cookie cookie = new Cookie(COOKIE, Long.toString(now + this.windowMillis));
+			cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+			cookie.setHttpOnly(true);
+			cookie.setMaxAge((int) Math.max(1, (this.windowMillis + 999) / 1000));
+			response.addCookie(cookie);
+		}
+		PINNED.set(pinnedUntil(request) > now);
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			PINNED.remove();
+		}
+	}
+
+	private static long pinnedUntil(HttpServletRequest request) {
+		Cookie[] cookies = request.getCookies();
+		if (cookies != null) {
+			for (Cookie cookie : cookies) {
+				if (COOKIE.equals(cookie.getName())) {
+					try {
+						return Long.parseLong(cookie.getValue());
+					} catch (NumberFormatException e) {
+						return 0;
+					}
+				}
+			}
+		}
+		return 0;
+	}
+}
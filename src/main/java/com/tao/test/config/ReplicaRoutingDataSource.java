@@ -0,0 +1,162 @@
+package com.tao.test.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Hands out primary connections, except inside read-only transactions not pinned by ReadYourWrites,
+ * which get the healthy replica with the fewest active connections. Replicas failing a health check
+ * or a connection attempt are skipped until a later check succeeds, reads fall back to the primary
+ * when none is healthy. A replica whose pool merely timed out while still opening connections is busy
+ * rather than down, that read tries the next replica or the primary and the replica stays in rotation. Needs a LazyConnectionDataSourceProxy in front, so the connection is taken
+ * once the transaction is marked read-only. A MeterBinder rather than taking the MeterRegistry, which
+ * itself needs the datasources for the pool metrics.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable, MeterBinder {
+
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+	private final HikariDataSource primary;
+	private final List<Replica> replicas;
+	private final LongAdder primaryReads = new LongAdder();
+	private final LongAdder replicaReads = new LongAdder();
+
+	public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas) {
+		this.primary = primary;
+		this.replicas = replicas.stream().map(Replica::new).collect(Collectors.toList());
+	}
+
+	@Override
+	public void bindTo(MeterRegistry meterRegistry) {
+		FunctionCounter.builder("product.datasource.reads", this.primaryReads, LongAdder::sum)
+				.tag("target", "primary")
+				.description("Read-only transactions by the datasource serving them")
+				.register(meterRegistry);
+		FunctionCounter.builder("product.datasource.reads", this.replicaReads, LongAdder::sum)
+				.tag("target", "replica")
+				.description("Read-only transactions by the datasource serving them")
+				.register(meterRegistry);
+		for (Replica replica : this.replicas) {
+			Gauge.builder("product.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+					.tag("replica", replica.dataSource.getPoolName())
+					.description("1 while the replica takes reads").register(meterRegistry);
+		}
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return this.primary.getConnection();
+		}
+		if (!ReadYourWrites.isPinned()) {
+			Set<Replica> busy = new HashSet<>();
+			for (Replica replica = leastBusy(busy); replica != null; replica = leastBusy(busy)) {
+				try {
+					Connection connection = replica.dataSource.getConnection();
+					this.replicaReads.increment();
+					return connection;
+				} catch (SQLException e) {
+					if (isBusy(replica, e)) {
+						log.debug("Replica {} is busy: {}", replica.dataSource.getPoolName(),
+								e.getMessage());
+						busy.add(replica);
+					} else {
+						log.warn("Replica {} failed, taking it out of rotation: {}",
+								replica.dataSource.getPoolName(), e.getMessage());
+						replica.healthy = false;
+					}
+				}
+			}
+		}
+		this.primaryReads.increment();
+		return this.primary.getConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Credentials are configured per datasource");
+	}
+
+	/**
+	 * Hikari times out with a SQLTransientConnectionException both when every connection is in use and
+	 * when none can be opened, the latter with the last connection failure as the cause once there is
+	 * one. Only a pool holding connections and without such a cause is busy rather than down.
+	 */
+	private static boolean isBusy(Replica replica, SQLException e) {
+		if (!(e instanceof SQLTransientException) || e.getCause() instanceof SQLException) {
+			return false;
+		}
+		HikariPoolMXBean pool = replica.dataSource.getHikariPoolMXBean();
+		return pool != null && pool.getTotalConnections() > 0;
+	}
+
+	private Replica leastBusy(Set<Replica> skipped) {
+		Replica best = null;
+		int bestActive = Integer.MAX_VALUE;
+		for (Replica replica : this.replicas) {
+			if (!replica.healthy || skipped.contains(replica)) {
+				continue;
+			}
+			HikariPoolMXBean pool = replica.dataSource.getHikariPoolMXBean();
+			int active = pool == null ? 0 : pool.getActiveConnections();
+			if (active < bestActive) {
+				best = replica;
+				bestActive = active;
+			}
+		}
+		return best;
+	}
+
+	@Scheduled(fixedDelayString = "${app.datasource.replica.health-interval:5000}")
+	public void checkReplicas() {
+		for (Replica replica : this.replicas) {
+			boolean healthy;
+			try (Connection connection = replica.dataSource.getConnection()) {
+				healthy = connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+			} catch (SQLException e) {
+				// Exhausted but reachable tells nothing new, keep the current state
+				healthy = replica.healthy && isBusy(replica, e);
+			}
+			if (healthy != replica.healthy) {
+				log.warn("Replica {} is {}", replica.dataSource.getPoolName(),
+						healthy ? "back in rotation" : "out of rotation");
+			}
+			replica.healthy = healthy;
+		}
+	}
+
+	@Override
+	public void close() {
+		this.replicas.forEach(replica -> replica.dataSource.close());
+		this.primary.close();
+	}
+
+	private static final class Replica {
+
+		private final HikariDataSource dataSource;
+		private volatile boolean healthy = true;
+
+		private Replica(HikariDataSource dataSource) {
+			this.dataSource = dataSource;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.tao.test.controller;
+
+/**
+ * Limit on the requests of one EndpointClass in flight, queued or running, adapted to their latency.
+ * A long term average of the latency is the baseline: while samples stay within tolerance times the
+ * baseline and the limit is in use, it grows by its square root, as latency climbs above that it
+ * shrinks in proportion, down to half per sample. A request over its timeout cuts it by a tenth,
+ * its slot is only freed when it finishes. Moves are smoothed and kept within min and max.
+ */
+final class AdaptiveConcurrencyLimit {
+
+	private static final double BACKOFF = 0.9;
+	private static final double MIN_GRADIENT = 0.5;
+
+	private final int min;
+	private final int max;
+	private final double tolerance;
+	private final double smoothing;
+	private final double baselineFactor;
+
+	private double limit;
+	private double baselineNanos;
+	private int inFlight;
+
+	AdaptiveConcurrencyLimit(int initial, int min, int max, double tolerance, double smoothing,
+			int window) {
+		this.min = Math.max(1, min);
+		this.max = Math.max(this.min, max);
+		this.limit = Math.min(this.max, Math.max(this.min, initial));
+		this.tolerance = tolerance;
+		this.smoothing = smoothing;
+		this.baselineFactor = 2.0 / (window + 1);
+	}
+
+	/**
+	 * @return false when the limit is reached, otherwise the caller must call release exactly once
+	 */
+	synchronized boolean tryAcquire() {
+		if (this.inFlight >= (int) this.limit) {
+			return false;
+		}
+		this.inFlight++;
+		return true;
+	}
+
+	/**
+	 * @param latencyNanos from acquire to completion, negative when the request was not measured
+	 */
+	synchronized void release(long latencyNanos) {
+		int inFlight = this.inFlight--;
+		if (latencyNanos < 0) {
+			return;
+		}
+		long sample = Math.max(1, latencyNanos);
+		this.baselineNanos = this.baselineNanos == 0 ? sample
+				: this.baselineNanos + (sample - this.baselineNanos) * this.baselineFactor;
+		// Latency far below the baseline means it is stale after an overload, let it recover faster
+		if (this.baselineNanos > 2 * sample) {
+			this.baselineNanos *= BACKOFF;
+		}
+		double gradient = Math.max(MIN_GRADIENT,
+				Math.min(1.0, this.tolerance * this.baselineNanos / sample));
+		// Below half the limit, fast answers say nothing about whether a higher one is safe
+		if (gradient == 1.0 && inFlight < this.limit / 2) {
+			return;
+		}
+		double target = this.limit * gradient + Math.sqrt(this.limit);
+		this.limit = Math.min(this.max, Math.max(this.min,
+				this.limit * (1 - this.smoothing) + target * this.smoothing));
+	}
+
+	/**
+	 * Cuts the limit by a tenth, for a request that overran its timeout. Its slot stays taken until
+	 * it is released
+	 */
+	synchronized void backoff() {
+		this.limit = Math.max(this.min, this.limit * BACKOFF);
+	}
+
+	synchronized double limit() {
+		return this.limit;
+	}
+
+	synchronized int inFlight() {
+		return this.inFlight;
+	}
+}
@@ -0,0 +1,256 @@
+package com.tao.test.controller;
+
+import com.tao.test.config.ReadYourWrites;
+import com.tao.test.domain.enums.EndpointClass;
+import com.tao.test.exception.ServiceUnavailableException;
+import com.tao.test.service.diagnostics.RequestStatements;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Runs controller work off the Tomcat workers, on one bounded executor per EndpointClass.
+ * Sized by app.async.{read,write,moderation}.threads, queue-capacity and timeout (ms). A full queue
+ * answers 503 right away, a request not started within the timeout is dropped and answers 503. Once
+ * started it answers with its own result however long it takes, so a client is never told to retry
+ * work that still commits. app.async.enabled=false runs everything on the Tomcat worker again.
+ *
+ * With app.limit.enabled, an AdaptiveConcurrencyLimit per class answers 503 with Retry-After
+ * app.limit.retry-after seconds right away once the requests in flight reach the limit, instead of
+ * queuing them behind a slow database. app.limit.{read,write,moderation}.initial, min and max bound
+ * it, by default the thread count, 1 and threads plus queue-capacity. app.limit.tolerance is the
+ * latency growth over the long term average accepted before the limit shrinks, averaged over
+ * app.limit.window requests, app.limit.smoothing how far the limit moves per request.
+ */
+@Component
+public class EndpointExecutors {
+
+	/**
+	 * The request waits for the work once it started, the queue timeout is enforced by timeouts
+	 */
+	private static final long NO_TIMEOUT = 0L;
+
+	private final boolean enabled;
+	private final long retryAfter;
+	private final Map<EndpointClass, Pool> pools = new EnumMap<>(EndpointClass.class);
+	private final ScheduledThreadPoolExecutor timeouts = new ScheduledThreadPoolExecutor(1, r -> {
+		Thread thread = new Thread(r, "endpoint-timeouts");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	@Autowired
+	public EndpointExecutors(Environment environment, MeterRegistry meterRegistry,
+			@Value("${app.async.enabled:true}") boolean enabled,
+			@Value("${app.limit.enabled:true}") boolean limitEnabled,
+			@Value("${app.limit.retry-after:1}") long retryAfter,
+			@Value("${app.limit.tolerance:2.0}") double tolerance,
+			@Value("${app.limit.smoothing:0.2}") double smoothing,
+			@Value("${app.limit.window:500}") int window) {
+		this.enabled = enabled;
+		this.retryAfter = retryAfter;
+		this.timeouts.setRemoveOnCancelPolicy(true);
+		for (EndpointClass endpointClass : EndpointClass.values()) {
+			String name = endpointClass.name().toLowerCase(Locale.ROOT);
+			String prefix = "app.async." + name + ".";
+			int threads = environment.getProperty(prefix + "threads", Integer.class, 4);
+			int queueCapacity = environment.getProperty(prefix + "queue-capacity", Integer.class, 100);
+			long timeout = environment.getProperty(prefix + "timeout", Long.class, 10000L);
+			AtomicInteger count = new AtomicInteger();
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0,
+					TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+						Thread thread = new Thread(r, "endpoint-" + name + "-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			new ExecutorServiceMetrics(executor, "endpoint-" + name, Tags.empty()).bindTo(meterRegistry);
+			Counter rejected = Counter.builder("product.endpoint.rejected").tag("class", name)
+					.description("Requests answered 503 because the executor or its limit was saturated,"
+							+ " or timed out")
+					.register(meterRegistry);
+			AdaptiveConcurrencyLimit limit = null;
+			if (limitEnabled) {
+				String limitPrefix = "app.limit." + name + ".";
+				limit = new AdaptiveConcurrencyLimit(
+						environment.getProperty(limitPrefix + "initial", Integer.class, threads),
+						environment.getProperty(limitPrefix + "min", Integer.class, 1),
+						environment.getProperty(limitPrefix + "max", Integer.class,
+								threads + queueCapacity),
+						tolerance, smoothing, window);
+				Gauge.builder("product.endpoint.limit", limit, AdaptiveConcurrencyLimit::limit)
+						.tag("class", name).description("Requests allowed in flight")
+						.register(meterRegistry);
+				Gauge.builder("product.endpoint.inflight", limit, AdaptiveConcurrencyLimit::inFlight)
+						.tag("class", name).description("Requests queued or running")
+						.register(meterRegistry);
+			}
+			Counter admitted = Counter.builder("product.endpoint.admission").tag("class", name)
+					.tag("decision", "admitted").description("Requests let in by the concurrency limit")
+					.register(meterRegistry);
+			Counter limited = Counter.builder("product.endpoint.admission").tag("class", name)
+					.tag("decision", "limited")
+					.description("Requests answered 503 because the concurrency limit was reached")
+					.register(meterRegistry);
+			this.pools.put(endpointClass,
+					new Pool(executor, timeout, rejected, limit, admitted, limited));
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.pools.values().forEach(pool -> pool.executor.shutdownNow());
+		this.timeouts.shutdownNow();
+	}
+
+	/**
+	 * @return result completed by the endpointClass executor, errors go to the exception handlers
+	 */
+	public <T> DeferredResult<T> submit(EndpointClass endpointClass, Supplier<T> work) {
+		Pool pool = this.pools.get(endpointClass);
+		DeferredResult<T> result = new DeferredResult<>(NO_TIMEOUT);
+		Admission admission = admit(endpointClass, pool);
+		if (!this.enabled) {
+			try {
+				result.setResult(work.get());
+			} finally {
+				admission.release();
+			}
+			return result;
+		}
+		Supplier<T> propagated = RequestStatements.propagate(ReadYourWrites.propagate(work));
+		// Claimed by whichever of the worker and the timeout comes first
+		AtomicBoolean claimed = new AtomicBoolean();
+		Runnable task = () -> {
+			if (!claimed.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				result.setResult(propagated.get());
+			} catch (RuntimeException e) {
+				result.setErrorResult(e);
+			} finally {
+				admission.release();
+			}
+		};
+		try {
+			pool.executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			admission.abandon();
+			pool.rejected.increment();
+			throw new ServiceUnavailableException(
+					"Too many " + endpointClass + " requests in progress, please retry later",
+					this.retryAfter);
+		}
+		ScheduledFuture<?> timeout = this.timeouts.schedule(() -> {
+			// Fails once the work started, its result is then the answer
+			admission.backoff();
+			if (claimed.compareAndSet(false, true)) {
+				pool.executor.remove(task);
+				admission.abandon();
+				pool.rejected.increment();
+				result.setErrorResult(new ServiceUnavailableException("Request did not start within "
+						+ pool.timeout + " ms, please retry later", this.retryAfter));
+			}
+		}, pool.timeout, TimeUnit.MILLISECONDS);
+		result.onCompletion(() -> timeout.cancel(false));
+		return result;
+	}
+
+	private Admission admit(EndpointClass endpointClass, Pool pool) {
+		if (pool.limit == null) {
+			return Admission.UNLIMITED;
+		}
+		if (!pool.limit.tryAcquire()) {
+			pool.limited.increment();
+			pool.rejected.increment();
+			throw new ServiceUnavailableException("Too many " + endpointClass
+					+ " requests in flight for the current latency, please retry later",
+					this.retryAfter);
+		}
+		pool.admitted.increment();
+		return new Admission(pool.limit);
+	}
+
+	/**
+	 * One request let in by the limit, released once when it finishes or is dropped before starting
+	 */
+	private static final class Admission {
+
+		private static final Admission UNLIMITED = new Admission(null);
+
+		private final AdaptiveConcurrencyLimit limit;
+		private final long start = System.nanoTime();
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Admission(AdaptiveConcurrencyLimit limit) {
+			this.limit = limit;
+		}
+
+		/**
+		 * Releases with the latency up to now, once the request finished
+		 */
+		void release() {
+			if (this.limit != null && this.released.compareAndSet(false, true)) {
+				this.limit.release(System.nanoTime() - this.start);
+			}
+		}
+
+		/**
+		 * Releases without a latency sample, for requests that never ran
+		 */
+		void abandon() {
+			if (this.limit != null && this.released.compareAndSet(false, true)) {
+				this.limit.release(-1);
+			}
+		}
+
+		/**
+		 * Shrinks the limit for a request over its timeout, keeping its slot while it still runs
+		 */
+		void backoff() {
+			if (this.limit != null) {
+				this.limit.backoff();
+			}
+		}
+	}
+
+	private static final class Pool {
+
+		private final ThreadPoolExecutor executor;
+		private final long timeout;
+		private final Counter rejected;
+		private final AdaptiveConcurrencyLimit limit;
+		private final Counter admitted;
+		private final Counter limited;
+
+		private Pool(ThreadPoolExecutor executor, long timeout, Counter rejected,
+				AdaptiveConcurrencyLimit limit, Counter admitted, Counter limited) {
+			this.executor = executor;
+			this.timeout = timeout;
+			this.rejected = rejected;
+			this.limit = limit;
+			this.admitted = admitted;
+			this.limited = limited;
+		}
+	}
+}
@@ -1,17 +1,50 @@
 package com.tao.test.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tao.test.domain.Product;
+import com.tao.test.domain.dto.ApprovalClaimDTO;
+import com.tao.test.domain.dto.ApprovalSelectionDTO;
+import com.tao.test.domain.dto.BatchItemResultDTO;
+import com.tao.test.domain.dto.ImportProgressDTO;
+import com.tao.test.domain.dto.ImportRejectedRowDTO;
+import com.tao.test.domain.dto.ProductBatchUpdateDTO;
+import com.tao.test.domain.dto.ProductChangesDTO;
+import com.tao.test.domain.dto.ProductCursor;
 import com.tao.test.domain.dto.ProductDTO;
+import com.tao.test.domain.dto.ProductFacetsDTO;
 import com.tao.test.domain.dto.ProductUpdateDTO;
+import com.tao.test.domain.dto.TotalCount;
+import com.tao.test.domain.enums.EndpointClass;
+import com.tao.test.domain.enums.ExportFormat;
+import com.tao.test.domain.enums.Status;
+import com.tao.test.exception.PreconditionFailedException;
 import com.tao.test.exception.ResourceNotFoundException;
+import com.tao.test.service.ApprovalClaimService;
+import com.tao.test.service.BulkApprovalService;
+import com.tao.test.service.ProductBatchService;
+import com.tao.test.service.ProductExportService;
+import com.tao.test.service.ProductImportService;
 import com.tao.test.service.ProductService;
+import com.tao.test.service.ProductUpdateCoalescer;
+import com.tao.test.service.event.CatalogueVersion;
+import com.tao.test.service.feed.ProductChangeFeed;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -19,40 +52,98 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 /**
  * Controller for all the Product Related APIs
  * context root /api added in application.properties
+ * JSON endpoints run on the EndpointExecutors pool of their EndpointClass, streaming ones on the MVC task executor
+ * With app.etag.listings.enabled, listings carry the CatalogueVersion as ETag and answer a matching If-None-Match with 304 before reaching a pool
  */
 @RestController
 @RequestMapping("/products")
 public class ProductController {
 
+	public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+	public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+	public static final String TOTAL_COUNT_EXACT_HEADER = "X-Total-Count-Exact";
+	public static final String NDJSON = "application/x-ndjson";
+	public static final String CSV = "text/csv";
+
 	private final ProductService productService;
+	private final ProductBatchService productBatchService;
+	private final BulkApprovalService bulkApprovalService;
+	private final ApprovalClaimService approvalClaimService;
+	private final ProductExportService productExportService;
+	private final ProductImportService productImportService;
+	private final ProductUpdateCoalescer productUpdateCoalescer;
+	private final EndpointExecutors endpointExecutors;
+	private final CatalogueVersion catalogueVersion;
+	private final ProductChangeFeed productChangeFeed;
+	private final ObjectMapper objectMapper;
+	private final long exportTimeout;
 
 	@Autowired
-	public ProductController(ProductService productService) {
+	public ProductController(ProductService productService,
+			ProductBatchService productBatchService, BulkApprovalService bulkApprovalService,
+			ApprovalClaimService approvalClaimService,
+			ProductExportService productExportService, ProductImportService productImportService,
+			ProductUpdateCoalescer productUpdateCoalescer, EndpointExecutors endpointExecutors,
+			CatalogueVersion catalogueVersion, ProductChangeFeed productChangeFeed,
+			ObjectMapper objectMapper,
+			@Value("${app.export.timeout:3600000}") long exportTimeout) {
 		this.productService = productService;
+		this.productBatchService = productBatchService;
+		this.bulkApprovalService = bulkApprovalService;
+		this.approvalClaimService = approvalClaimService;
+		this.productExportService = productExportService;
+		this.productImportService = productImportService;
+		this.productUpdateCoalescer = productUpdateCoalescer;
+		this.endpointExecutors = endpointExecutors;
+		this.catalogueVersion = catalogueVersion;
+		this.productChangeFeed = productChangeFeed;
+		this.objectMapper = objectMapper;
+		this.exportTimeout = exportTimeout;
 	}
 
 
 	/**
 	 * API to List Active Products
 	 *
-	 * @param pageNumber Page number for pagination (Default: 1 and Minimum: 1)
-	 * @param pageSize   Page size for pagination (Default: 10 and Minimum: 1 and Maximum: 50)
-	 * @return List of Active Products
+	 * @param pageNumber   Page number for pagination (Default: 1 and Minimum: 1)
+	 * @param pageSize     Page size for pagination (Default: 10 and Minimum: 1 and Maximum: 50)
+	 * @param cursor       Cursor from the X-Next-Cursor header of the previous page. (Optional, overrides pageNumber)
+	 * @param includeTotal Adds the X-Total-Count header. (Default: false)
+	 * @return List of Active Products, X-Next-Cursor header when more pages may follow, 304 when unchanged
 	 */
 	@GetMapping()
-	public ResponseEntity<Collection<ProductDTO>> fetchAllActiveProducts(
+	public DeferredResult<ResponseEntity<Collection<ProductDTO>>> fetchAllActiveProducts(
 			@RequestParam(defaultValue = "1") @Min(1) int pageNumber,
-			@RequestParam(defaultValue = "10") @Min(1) @Max(50) int pageSize) {
-		return new ResponseEntity<>(ProductDTO.convert(
-				this.productService.fetchAllActiveProducts(pageNumber, pageSize)), HttpStatus.OK);
+			@RequestParam(defaultValue = "10") @Min(1) @Max(50) int pageSize,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "false") boolean includeTotal, WebRequest request) {
+		String eTag = this.catalogueVersion.eTag();
+		if (eTag != null && request.checkNotModified(eTag)) {
+			return null;
+		}
+		return this.endpointExecutors.submit(EndpointClass.READ, () -> {
+			Collection<ProductDTO> products = cursor == null
+					? this.productService.fetchAllActiveProducts(pageNumber, pageSize)
+					: this.productService.fetchAllActiveProducts(ProductCursor.decode(cursor),
+							pageSize);
+			return page(products, pageSize,
+					includeTotal ? this.productService.countActiveProducts() : null, eTag);
+		});
 	}
 
 	/**
@@ -61,26 +152,118 @@ public class ProductController {
 	 * @param productName   Name of the Product. (Optional)
 	 * @param minPrice      minimum Price of the Product. (Default: 0.0)
 	 * @param maxPrice      maximum Price of the Product. (Default: 1000000000000000000.0)
-	 * @param minPostedDate minimum creation date of the Product. (Default: "2000-01-01T00:00")
-	 * @param maxPostedDate maximum creation date of the Product. (Default: "9999-12-31T00:00")
+	 * @param minPostedDate minimum creation date of the Product, in UTC. (Default: "2000-01-01T00:00")
+	 * @param maxPostedDate maximum creation date of the Product, in UTC. (Default: "9999-12-31T00:00")
 	 * @param pageNumber    Page number for pagination (Default: 1 and Minimum: 1)
 	 * @param pageSize      Page size for pagination (Default: 10 and Minimum: 1 and Maximum: 50)
-	 * @return List of Active Products with filter criteria
+	 * @param cursor        Cursor from the X-Next-Cursor header of the previous page. (Optional, overrides pageNumber)
+	 * @param includeTotal  Adds the X-Total-Count header, X-Total-Count-Exact is false when counting stopped at app.count.search.cap. (Default: false)
+	 * @return List of Active Products with filter criteria, X-Next-Cursor header when more pages may follow, 304 when unchanged
 	 */
 	@GetMapping("/search")
-	public ResponseEntity<Collection<ProductDTO>> searchProducts(
+	public DeferredResult<ResponseEntity<Collection<ProductDTO>>> searchProducts(
 			@RequestParam(required = false, defaultValue = "") String productName,
 			@RequestParam(required = false, defaultValue = "0.0") double minPrice,
 			@RequestParam(required = false, defaultValue = "1000000000000000000.0") double maxPrice,
 			@RequestParam(required = false, defaultValue = "2000-01-01T00:00") @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") Date minPostedDate,
 			@RequestParam(required = false, defaultValue = "9999-12-31T00:00") @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") Date maxPostedDate,
 			@RequestParam(defaultValue = "1") @Min(1) int pageNumber,
-			@RequestParam(defaultValue = "10") @Min(1) @Max(50) int pageSize) {
+			@RequestParam(defaultValue = "10") @Min(1) @Max(50) int pageSize,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "false") boolean includeTotal, WebRequest request) {
+		String eTag = this.catalogueVersion.eTag();
+		if (eTag != null && request.checkNotModified(eTag)) {
+			return null;
+		}
+		return this.endpointExecutors.submit(EndpointClass.READ, () -> {
+			Collection<ProductDTO> products = cursor == null
+					? this.productService.searchProducts(productName, minPrice, maxPrice,
+							minPostedDate, maxPostedDate, pageNumber, pageSize)
+					: this.productService.searchProducts(productName, minPrice, maxPrice,
+							minPostedDate, maxPostedDate, ProductCursor.decode(cursor), pageSize);
+			return page(products, pageSize, includeTotal ? this.productService.countSearchResults(
+					productName, minPrice, maxPrice, minPostedDate, maxPostedDate) : null, eTag);
+		});
+	}
+
+	/**
+	 * API to Count Active Products by price range and posting age, for the search facets
+	 *
+	 * @param productName      Name of the Product. (Optional)
+	 * @param priceBounds      Ascending bucket bounds, the last bucket is open-ended. (Default: 0,100,500,1000,5000)
+	 * @param postedWithinDays Posting age windows in days. (Default: 1,7,30,365)
+	 * @return Total, per price bucket and per posting age counts of the Active Products with the name
+	 */
+	@GetMapping("/facets")
+	public DeferredResult<ResponseEntity<ProductFacetsDTO>> fetchFacets(
+			@RequestParam(required = false, defaultValue = "") String productName,
+			@RequestParam(required = false, defaultValue = "0,100,500,1000,5000") double[] priceBounds,
+			@RequestParam(required = false, defaultValue = "1,7,30,365") int[] postedWithinDays) {
+		return this.endpointExecutors.submit(EndpointClass.READ, () -> new ResponseEntity<>(
+				this.productService.fetchFacets(productName, priceBounds, postedWithinDays),
+				HttpStatus.OK));
+	}
+
+	/**
+	 * API to Export Active Products, for mirroring the whole catalogue in one request
+	 *
+	 * @param productName   Name of the Product. (Optional)
+	 * @param minPrice      minimum Price of the Product. (Default: 0.0)
+	 * @param maxPrice      maximum Price of the Product. (Default: 1000000000000000000.0)
+	 * @param minPostedDate minimum creation date of the Product, in UTC. (Default: "2000-01-01T00:00")
+	 * @param maxPostedDate maximum creation date of the Product, in UTC. (Default: "9999-12-31T00:00")
+	 * @param format        NDJSON or CSV. (Default: NDJSON)
+	 * @return Every Active Product with filter criteria, streamed newest first within app.export.timeout
+	 */
+	@GetMapping("/export")
+	public WebAsyncTask<Void> exportProducts(
+			@RequestParam(required = false, defaultValue = "") String productName,
+			@RequestParam(required = false, defaultValue = "0.0") double minPrice,
+			@RequestParam(required = false, defaultValue = "1000000000000000000.0") double maxPrice,
+			@RequestParam(required = false, defaultValue = "2000-01-01T00:00") @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") Date minPostedDate,
+			@RequestParam(required = false, defaultValue = "9999-12-31T00:00") @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") Date maxPostedDate,
+			@RequestParam(required = false, defaultValue = "NDJSON") ExportFormat format,
+			HttpServletResponse response) {
+		if (format == ExportFormat.CSV) {
+			response.setContentType(CSV + ";charset=UTF-8");
+			response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products.csv\"");
+		} else {
+			response.setContentType(NDJSON);
+		}
+		// Written like a StreamingResponseBody, with its own timeout instead of the MVC async default
+		return new WebAsyncTask<>(this.exportTimeout, () -> {
+			OutputStream out = response.getOutputStream();
+			this.productExportService.exportActiveProducts(productName, minPrice, maxPrice,
+					minPostedDate, maxPostedDate, format, out);
+			out.flush();
+			return null;
+		});
+	}
+
+	/**
+	 * API to Follow Product changes by long-polling, instead of polling the listing
+	 *
+	 * @param since next from the previous response. (Optional, default: only changes from now on)
+	 * @return Changes after since, waiting for the first one up to app.changes.poll-timeout.
+	 * resync when since is no longer in the feed: reload the products and continue from next
+	 */
+	@GetMapping("/changes")
+	public DeferredResult<ProductChangesDTO> fetchChanges(
+			@RequestParam(required = false) Long since) {
+		return this.productChangeFeed.poll(since);
+	}
 
-		return new ResponseEntity<>(ProductDTO.convert(
-				this.productService.searchProducts(productName, minPrice, maxPrice, minPostedDate,
-						maxPostedDate, pageNumber, pageSize)),
-				HttpStatus.OK);
+	/**
+	 * API to Follow Product changes as Server-Sent Events
+	 *
+	 * @param since       seq of the last change seen. (Optional, default: only changes from now on)
+	 * @param lastEventId sent by EventSource on reconnect, used when since is not given
+	 * @return change events with the seq as id, resync events with the seq to continue from as data
+	 */
+	@GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter streamChanges(@RequestParam(required = false) Long since,
+			@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+		return this.productChangeFeed.stream(since != null ? since : lastEventId);
 	}
 
 
@@ -91,9 +274,119 @@ public class ProductController {
 	 * @return Newly created Product
 	 */
 	@PostMapping()
-	public ResponseEntity<ProductDTO> createProduct(@RequestBody @Valid ProductUpdateDTO product) {
-		return new ResponseEntity<>(new ProductDTO(this.productService.createProduct(product)),
-				HttpStatus.OK);
+	public DeferredResult<ResponseEntity<ProductDTO>> createProduct(
+			@RequestBody @Valid ProductUpdateDTO product) {
+		return this.endpointExecutors.submit(EndpointClass.WRITE, () -> new ResponseEntity<>(
+				new ProductDTO(this.productService.createProduct(product)), HttpStatus.OK));
+	}
+
+	/**
+	 * API to Create Products in bulk
+	 *
+	 * @param products List of ProductDTO with name, price and status
+	 * @return Result per item, in request order. Invalid or failed items do not roll back the others
+	 */
+	@PostMapping("/batch")
+	public DeferredResult<ResponseEntity<List<BatchItemResultDTO>>> createProducts(
+			@RequestBody List<ProductUpdateDTO> products) {
+		return this.endpointExecutors.submit(EndpointClass.WRITE, () -> new ResponseEntity<>(
+				this.productBatchService.createProducts(products), HttpStatus.OK));
+	}
+
+	/**
+	 * API to Import Products from an upload, read and written incrementally
+	 *
+	 * @param contentType text/csv with a header naming name, price and status, or application/x-ndjson
+	 * @param upload      Request body, one Product per line
+	 * @return 202 with the started import once the upload is received, Location points to its progress at GET /products/import/{importId}.
+	 * 413 when the upload is over app.import.max-bytes
+	 */
+	@PostMapping(value = "/import", consumes = {CSV, NDJSON})
+	public ResponseEntity<ImportProgressDTO> importProducts(
+			@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream upload) {
+		ExportFormat format = MediaType.parseMediaType(contentType)
+				.isCompatibleWith(MediaType.parseMediaType(CSV)) ? ExportFormat.CSV : ExportFormat.NDJSON;
+		ImportProgressDTO progress = this.productImportService.importProducts(upload, format);
+		return ResponseEntity.accepted().location(ServletUriComponentsBuilder.fromCurrentRequest()
+				.path("/{importId}").buildAndExpand(progress.getImportId()).toUri()).body(progress);
+	}
+
+	/**
+	 * API to List recent Product Imports
+	 *
+	 * @return Progress of the running and the last finished imports
+	 */
+	@GetMapping("/import")
+	public DeferredResult<ResponseEntity<Collection<ImportProgressDTO>>> fetchImports() {
+		return this.endpointExecutors.submit(EndpointClass.READ,
+				() -> new ResponseEntity<>(this.productImportService.fetchImports(), HttpStatus.OK));
+	}
+
+	/**
+	 * API to Get the progress of a Product Import
+	 *
+	 * @param importId Unique Id of an Import
+	 * @return Progress of the import
+	 */
+	@GetMapping("/import/{importId}")
+	public DeferredResult<ResponseEntity<ImportProgressDTO>> fetchImport(
+			@PathVariable String importId) {
+		return this.endpointExecutors.submit(EndpointClass.READ, () -> new ResponseEntity<>(
+				this.productImportService.fetchImport(importId), HttpStatus.OK));
+	}
+
+	/**
+	 * API to Get the rejected rows of a Product Import
+	 *
+	 * @param importId   Unique Id of an Import
+	 * @param pageNumber Page number for pagination (Default: 1 and Minimum: 1)
+	 * @param pageSize   Page size for pagination (Default: 50 and Minimum: 1 and Maximum: 1000)
+	 * @return Rejected rows with their line number and error
+	 */
+	@GetMapping("/import/{importId}/rejected")
+	public DeferredResult<ResponseEntity<Collection<ImportRejectedRowDTO>>> fetchRejectedRows(
+			@PathVariable String importId,
+			@RequestParam(defaultValue = "1") @Min(1) int pageNumber,
+			@RequestParam(defaultValue = "50") @Min(1) @Max(1000) int pageSize) {
+		return this.endpointExecutors.submit(EndpointClass.READ, () -> new ResponseEntity<>(
+				this.productImportService.fetchRejectedRows(importId, pageNumber, pageSize),
+				HttpStatus.OK));
+	}
+
+	/**
+	 * API to Update Products in bulk
+	 *
+	 * @param products List of ProductDTO with productId, name, price and status
+	 * @return Result per item, in request order. Invalid or failed items do not roll back the others
+	 */
+	@PutMapping("/batch")
+	public DeferredResult<ResponseEntity<List<BatchItemResultDTO>>> updateProducts(
+			@RequestBody List<ProductBatchUpdateDTO> products) {
+		return this.endpointExecutors.submit(EndpointClass.WRITE, () -> new ResponseEntity<>(
+				this.productBatchService.updateProducts(products), HttpStatus.OK));
+	}
+
+	/**
+	 * API to Get a Product in any status
+	 *
+	 * @param productId Unique Id of a Product
+	 * @return Product, with its version as ETag for If-Match on update. 304 when If-None-Match matches
+	 */
+	@GetMapping("/{productId}")
+	public DeferredResult<ResponseEntity<ProductDTO>> fetchProduct(@PathVariable String productId,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+		return this.endpointExecutors.submit(EndpointClass.READ, () -> {
+			try {
+				Product product = this.productService.fetchProduct(productId);
+				String eTag = eTag(product);
+				if (eTag.equals(ifNoneMatch)) {
+					return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+				}
+				return ResponseEntity.ok().eTag(eTag).body(new ProductDTO(product));
+			} catch (ResourceNotFoundException e) {
+				throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+			}
+		});
 	}
 
 	/**
@@ -101,18 +394,24 @@ public class ProductController {
 	 *
 	 * @param productId Unique Id of a Product
 	 * @param product   ProductDTO with name, price and status
-	 * @return updated Product
+	 * @param ifMatch   ETag from GET /products/{productId}, 412 when the Product changed since. (Optional)
+	 * @return updated Product with its new ETag. 409 when a concurrent update commits first.
+	 * With app.update.coalesce.enabled, updates without If-Match arriving together get the Product written for the last of them
 	 */
 	@PutMapping("/{productId}")
-	public ResponseEntity<ProductDTO> updateProduct(@PathVariable String productId,
-			@RequestBody @Valid ProductUpdateDTO product) {
-		try {
-			return new ResponseEntity<>(
-					new ProductDTO(this.productService.updateProduct(productId, product)),
-					HttpStatus.OK);
-		} catch (ResourceNotFoundException e) {
-			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
-		}
+	public DeferredResult<ResponseEntity<ProductDTO>> updateProduct(@PathVariable String productId,
+			@RequestBody @Valid ProductUpdateDTO product,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		Long expectedVersion = expectedVersion(ifMatch);
+		return this.endpointExecutors.submit(EndpointClass.WRITE, () -> {
+			try {
+				Product updated = this.productUpdateCoalescer.update(productId, product,
+						expectedVersion);
+				return ResponseEntity.ok().eTag(eTag(updated)).body(new ProductDTO(updated));
+			} catch (ResourceNotFoundException e) {
+				throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+			}
+		});
 	}
 
 	/**
@@ -122,60 +421,249 @@ public class ProductController {
 	 * @return Delete message
 	 */
 	@DeleteMapping("/{productId}")
-	public ResponseEntity<String> deleteProduct(@PathVariable String productId) {
-		try {
-			return new ResponseEntity<>(this.productService.deleteProduct(productId),
-					HttpStatus.OK);
-		} catch (ResourceNotFoundException e) {
-			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
-		}
+	public DeferredResult<ResponseEntity<String>> deleteProduct(@PathVariable String productId) {
+		return this.endpointExecutors.submit(EndpointClass.WRITE, () -> {
+			try {
+				return new ResponseEntity<>(this.productService.deleteProduct(productId),
+						HttpStatus.OK);
+			} catch (ResourceNotFoundException e) {
+				throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+			}
+		});
 	}
 
 	/**
 	 * API to Get Products in Approval Queue
 	 *
-	 * @param pageNumber Page number for pagination (Default: 1 and Minimum: 1)
-	 * @param pageSize   Page size for pagination (Default: 10 and Minimum: 1 and Maximum: 50)
-	 * @return List of Products in Approval Queue
+	 * @param pageNumber   Page number for pagination (Default: 1 and Minimum: 1)
+	 * @param pageSize     Page size for pagination (Default: 10 and Minimum: 1 and Maximum: 50)
+	 * @param includeTotal Adds the X-Total-Count header. (Default: false)
+	 * @return List of Products in Approval Queue, 304 when unchanged
 	 */
 	@GetMapping("/approval-queue")
-	public ResponseEntity<Collection<ProductDTO>> fetchApprovalQueue(
+	public DeferredResult<ResponseEntity<Collection<ProductDTO>>> fetchApprovalQueue(
 			@RequestParam(defaultValue = "1") @Min(1) int pageNumber,
-			@RequestParam(defaultValue = "10") @Min(1) @Max(50) int pageSize) {
-		return new ResponseEntity<>(
-				ProductDTO.convert(this.productService.fetchApprovalQueue(pageNumber, pageSize)),
-				HttpStatus.OK);
+			@RequestParam(defaultValue = "10") @Min(1) @Max(50) int pageSize,
+			@RequestParam(defaultValue = "false") boolean includeTotal, WebRequest request) {
+		String eTag = this.catalogueVersion.eTag();
+		if (eTag != null && request.checkNotModified(eTag)) {
+			return null;
+		}
+		return this.endpointExecutors.submit(EndpointClass.MODERATION, () -> {
+			HttpHeaders headers = new HttpHeaders();
+			if (eTag != null) {
+				headers.setETag(eTag);
+			}
+			if (includeTotal) {
+				addTotal(headers, this.productService.countApprovalQueue());
+			}
+			return new ResponseEntity<>(this.productService.fetchApprovalQueue(pageNumber, pageSize),
+					headers, HttpStatus.OK);
+		});
+	}
+
+	/**
+	 * API to Claim the oldest unclaimed Products in Approval Queue for a reviewer
+	 *
+	 * @param reviewer Name of the reviewer
+	 * @param count    Number of entries to claim (Default: 10 and Minimum: 1 and Maximum: app.approval.claim.max-count)
+	 * @return Every entry the reviewer holds, with the lease expiry shared by all of them
+	 */
+	@PostMapping("/approval-queue/claims")
+	public DeferredResult<ResponseEntity<ApprovalClaimDTO>> claimApprovals(
+			@RequestParam String reviewer, @RequestParam(defaultValue = "10") int count) {
+		return this.endpointExecutors.submit(EndpointClass.MODERATION, () -> new ResponseEntity<>(
+				this.approvalClaimService.claim(reviewer, count), HttpStatus.OK));
+	}
+
+	/**
+	 * API to Get the Products in Approval Queue claimed by a reviewer
+	 *
+	 * @param reviewer Name of the reviewer
+	 * @return Entries the reviewer holds with an unexpired lease
+	 */
+	@GetMapping("/approval-queue/claims")
+	public DeferredResult<ResponseEntity<ApprovalClaimDTO>> fetchClaims(
+			@RequestParam String reviewer) {
+		return this.endpointExecutors.submit(EndpointClass.MODERATION, () -> new ResponseEntity<>(
+				this.approvalClaimService.fetchClaims(reviewer), HttpStatus.OK));
+	}
+
+	/**
+	 * API to Renew the lease on the claims of a reviewer
+	 *
+	 * @param reviewer Name of the reviewer
+	 * @return Entries the reviewer still holds, with the new lease expiry
+	 */
+	@PutMapping("/approval-queue/claims")
+	public DeferredResult<ResponseEntity<ApprovalClaimDTO>> renewClaims(
+			@RequestParam String reviewer) {
+		return this.endpointExecutors.submit(EndpointClass.MODERATION, () -> new ResponseEntity<>(
+				this.approvalClaimService.renewClaims(reviewer), HttpStatus.OK));
+	}
+
+	/**
+	 * API to Release the claims of a reviewer back to the Approval Queue
+	 *
+	 * @param reviewer Name of the reviewer
+	 * @return Number of released entries
+	 */
+	@DeleteMapping("/approval-queue/claims")
+	public DeferredResult<ResponseEntity<Integer>> releaseClaims(@RequestParam String reviewer) {
+		return this.endpointExecutors.submit(EndpointClass.MODERATION, () -> new ResponseEntity<>(
+				this.approvalClaimService.releaseClaims(reviewer), HttpStatus.OK));
 	}
 
 	/**
 	 * API to Approve a Product
 	 *
 	 * @param approvalId Unique Id for approval request
+	 * @param reviewer   Name of the reviewer, 409 when another reviewer holds the entry. (Optional)
 	 * @return Active Product
 	 */
 	@PutMapping("/approval-queue/{approvalId}/approve")
-	public ResponseEntity<ProductDTO> approveProduct(@PathVariable String approvalId) {
-		try {
-			return new ResponseEntity<>(
-					new ProductDTO(this.productService.approveProduct(approvalId)), HttpStatus.OK);
-		} catch (ResourceNotFoundException e) {
-			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
-		}
+	public DeferredResult<ResponseEntity<ProductDTO>> approveProduct(@PathVariable String approvalId,
+			@RequestParam(required = false) String reviewer) {
+		return this.endpointExecutors.submit(EndpointClass.MODERATION, () -> {
+			try {
+				return new ResponseEntity<>(new ProductDTO(
+						this.productService.approveProduct(approvalId, reviewer)), HttpStatus.OK);
+			} catch (ResourceNotFoundException e) {
+				throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+			}
+		});
 	}
 
 	/**
 	 * API to Reject a Product
 	 *
 	 * @param approvalId Unique Id for approval request
+	 * @param reviewer   Name of the reviewer, 409 when another reviewer holds the entry. (Optional)
 	 * @return Active Product
 	 */
 	@PutMapping("/approval-queue/{approvalId}/reject")
-	public ResponseEntity<ProductDTO> rejectProduct(@PathVariable String approvalId) {
+	public DeferredResult<ResponseEntity<ProductDTO>> rejectProduct(@PathVariable String approvalId,
+			@RequestParam(required = false) String reviewer) {
+		return this.endpointExecutors.submit(EndpointClass.MODERATION, () -> {
+			try {
+				return new ResponseEntity<>(new ProductDTO(
+						this.productService.rejectProduct(approvalId, reviewer)), HttpStatus.OK);
+			} catch (ResourceNotFoundException e) {
+				throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+			}
+		});
+	}
+
+	/**
+	 * API to Approve Products in bulk
+	 *
+	 * @param selection approvalIds, or requestedBefore (UTC) and maxPrice to select from the Approval Queue
+	 * @return Active Products, all approved in one transaction
+	 */
+	@PutMapping("/approval-queue/approve")
+	public DeferredResult<ResponseEntity<Collection<ProductDTO>>> approveProducts(
+			@RequestBody ApprovalSelectionDTO selection) {
+		return this.endpointExecutors.submit(EndpointClass.MODERATION, () -> new ResponseEntity<>(
+				ProductDTO.convert(this.bulkApprovalService.decide(selection, Status.ACTIVE)),
+				HttpStatus.OK));
+	}
+
+	/**
+	 * API to Approve Products in bulk, streaming progress for large selections
+	 *
+	 * @param selection approvalIds, or requestedBefore (UTC) and maxPrice to select from the Approval Queue
+	 * @return One progress line with the Active Products per committed chunk
+	 */
+	@PutMapping(value = "/approval-queue/approve", produces = NDJSON)
+	public ResponseEntity<StreamingResponseBody> approveProductsStreaming(
+			@RequestBody ApprovalSelectionDTO selection) {
+		return new ResponseEntity<>(out -> this.bulkApprovalService.decideInChunks(selection,
+				Status.ACTIVE, progress -> writeLine(out, progress)), HttpStatus.OK);
+	}
+
+	/**
+	 * API to Reject Products in bulk
+	 *
+	 * @param selection approvalIds, or requestedBefore (UTC) and maxPrice to select from the Approval Queue
+	 * @return Rejected Products, all rejected in one transaction
+	 */
+	@PutMapping("/approval-queue/reject")
+	public DeferredResult<ResponseEntity<Collection<ProductDTO>>> rejectProducts(
+			@RequestBody ApprovalSelectionDTO selection) {
+		return this.endpointExecutors.submit(EndpointClass.MODERATION, () -> new ResponseEntity<>(
+				ProductDTO.convert(this.bulkApprovalService.decide(selection, Status.REJECTED)),
+				HttpStatus.OK));
+	}
+
+	/**
+	 * API to Reject Products in bulk, streaming progress for large selections
+	 *
+	 * @param selection approvalIds, or requestedBefore (UTC) and maxPrice to select from the Approval Queue
+	 * @return One progress line with the Rejected Products per committed chunk
+	 */
+	@PutMapping(value = "/approval-queue/reject", produces = NDJSON)
+	public ResponseEntity<StreamingResponseBody> rejectProductsStreaming(
+			@RequestBody ApprovalSelectionDTO selection) {
+		return new ResponseEntity<>(out -> this.bulkApprovalService.decideInChunks(selection,
+				Status.REJECTED, progress -> writeLine(out, progress)), HttpStatus.OK);
+	}
+
+	private void writeLine(OutputStream out, Object line) {
 		try {
-			return new ResponseEntity<>(
-					new ProductDTO(this.productService.rejectProduct(approvalId)), HttpStatus.OK);
-		} catch (ResourceNotFoundException e) {
-			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+			out.write(this.objectMapper.writeValueAsBytes(line));
+			out.write('\n');
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
 	}
+
+	/**
+	 * Adds the cursor of the last row to a listing page when the page is full, and the total when counted
+	 */
+	private ResponseEntity<Collection<ProductDTO>> page(Collection<ProductDTO> products,
+			int pageSize, TotalCount total, String eTag) {
+		HttpHeaders headers = new HttpHeaders();
+		if (eTag != null) {
+			headers.setETag(eTag);
+		}
+		if (total != null) {
+			addTotal(headers, total);
+		}
+		if (products.size() == pageSize) {
+			ProductDTO last = null;
+			for (ProductDTO product : products) {
+				last = product;
+			}
+			headers.set(NEXT_CURSOR_HEADER, ProductCursor.after(last).encode());
+		}
+		return new ResponseEntity<>(products, headers, HttpStatus.OK);
+	}
+
+	private static String eTag(Product product) {
+		return "\"" + product.getVersion() + "\"";
+	}
+
+	/**
+	 * @return the version of a single strong If-Match ETag, null for none or *
+	 */
+	private static Long expectedVersion(String ifMatch) {
+		if (ifMatch == null || ifMatch.trim().equals("*")) {
+			return null;
+		}
+		String tag = ifMatch.trim();
+		try {
+			if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+				return Long.valueOf(tag.substring(1, tag.length() - 1));
+			}
+		} catch (NumberFormatException e) {
+			// not one of our ETags
+		}
+		throw new PreconditionFailedException("If-Match " + ifMatch + " is not a Product ETag");
+	}
+
+	private static void addTotal(HttpHeaders headers, TotalCount total) {
+		headers.set(TOTAL_COUNT_HEADER, Long.toString(total.getCount()));
+		headers.set(TOTAL_COUNT_EXACT_HEADER, Boolean.toString(total.isExact()));
+	}
 }
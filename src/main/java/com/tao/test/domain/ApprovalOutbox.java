@@ -0,0 +1,41 @@
+package com.tao.test.domain;
+
+import com.tao.test.config.IdStorageConfiguration;
+import java.util.Date;
+import java.util.UUID;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Type;
+
+/**
+ * Request to put a product into the approval queue, written in the transaction of the product change
+ * and moved into approval_queue by ApprovalOutboxDispatcher.
+ */
+@Entity(name = "approval_outbox")
+@Table(indexes = @Index(name = "idx_approval_outbox_created", columnList = "createdOn, outboxId"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class ApprovalOutbox {
+
+	@Id
+	@GeneratedValue(generator = "time-ordered-uuid")
+	@GenericGenerator(name = "time-ordered-uuid", strategy = "com.tao.test.domain.TimeOrderedUuidGenerator")
+	@Type(type = IdStorageConfiguration.UUID_TYPE)
+	UUID outboxId;
+	@Type(type = IdStorageConfiguration.UUID_TYPE)
+	UUID productId;
+	Date createdOn;
+
+	public ApprovalOutbox(UUID productId) {
+		this.productId = productId;
+		this.createdOn = new Date();
+	}
+}
@@ -1,33 +1,48 @@
 package com.tao.test.domain;
 
+import com.tao.test.config.IdStorageConfiguration;
 import java.util.Date;
 import java.util.UUID;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Type;
 
 @Entity(name = "approval_queue")
+@Table(indexes = {@Index(name = "uk_approval_queue_product", columnList = "productId", unique = true),
+		@Index(name = "idx_approval_queue_request", columnList = "requestDate")})
 @Getter
 @Setter
 @NoArgsConstructor
 public class ApprovalQueue {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
-	@Type(type = "uuid-char")
+	@GeneratedValue(generator = "time-ordered-uuid")
+	@GenericGenerator(name = "time-ordered-uuid", strategy = "com.tao.test.domain.TimeOrderedUuidGenerator")
+	@Type(type = IdStorageConfiguration.UUID_TYPE)
 	UUID approvalId;
-	@Type(type = "uuid-char")
+	@Type(type = IdStorageConfiguration.UUID_TYPE)
 	UUID productId;
 	Date requestDate;
+	/**
+	 * Reviewer holding the entry until claimExpiresOn, both null when never claimed or released
+	 */
+	String claimedBy;
+	Date claimExpiresOn;
 
 	public ApprovalQueue(UUID productId) {
 		this.requestDate = new Date();
 		this.productId = productId;
 	}
 
+	public ApprovalQueue(UUID productId, Date requestDate) {
+		this.requestDate = requestDate;
+		this.productId = productId;
+	}
 }
@@ -1,5 +1,6 @@
 package com.tao.test.domain;
 
+import com.tao.test.config.IdStorageConfiguration;
 import com.tao.test.domain.dto.ProductUpdateDTO;
 import com.tao.test.domain.enums.Status;
 import java.util.Date;
@@ -7,22 +8,27 @@ import java.util.UUID;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Type;
 
 @Entity(name = "product")
+@Table(indexes = @Index(name = "idx_product_status_created", columnList = "status, createdOn, product_id"))
 @Getter
 @Setter
 @NoArgsConstructor
 public class Product {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
-	@Type(type = "uuid-char")
+	@GeneratedValue(generator = "time-ordered-uuid")
+	@GenericGenerator(name = "time-ordered-uuid", strategy = "com.tao.test.domain.TimeOrderedUuidGenerator")
+	@Type(type = IdStorageConfiguration.UUID_TYPE)
 	@Column(name = "product_id")
 	UUID productId;
 	String name;
@@ -30,6 +36,12 @@ public class Product {
 	Status status;
 	Date createdOn;
 	Date updatedOn;
+	/**
+	 * Optimistic lock, also the ETag of the Product
+	 */
+	@Version
+	@Column(columnDefinition = "bigint not null default 0")
+	long version;
 
 	public Product(String name, double price, Status status) {
 		this.name = name;
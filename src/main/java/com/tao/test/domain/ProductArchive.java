@@ -0,0 +1,49 @@
+package com.tao.test.domain;
+
+import com.tao.test.config.IdStorageConfiguration;
+import com.tao.test.domain.enums.Status;
+import java.util.Date;
+import java.util.UUID;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Type;
+
+/**
+ * INACTIVE and REJECTED products moved out of product by ProductArchiver, with the same columns so
+ * rows move between the two tables with one INSERT ... SELECT. A product lives in exactly one of them.
+ */
+@Entity(name = "product_archive")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ProductArchive {
+
+	@Id
+	@Type(type = IdStorageConfiguration.UUID_TYPE)
+	@Column(name = "product_id")
+	UUID productId;
+	String name;
+	double price;
+	Status status;
+	Date createdOn;
+	Date updatedOn;
+	@Column(columnDefinition = "bigint not null default 0")
+	long version;
+	Date archivedOn;
+
+	/**
+	 * @return detached copy, changes to it are not written anywhere
+	 */
+	public Product toProduct() {
+		Product product = new Product(this.name, this.price, this.status);
+		product.setProductId(this.productId);
+		product.setCreatedOn(this.createdOn);
+		product.setUpdatedOn(this.updatedOn);
+		product.setVersion(this.version);
+		return product;
+	}
+}
@@ -0,0 +1,50 @@
+package com.tao.test.domain;
+
+import java.io.Serializable;
+import java.security.SecureRandom;
+import java.util.UUID;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+/**
+ * Generates version 7 style UUIDs: 48 bits of epoch millis, a 12 bit counter for ids within the same
+ * millisecond and 62 random bits. Ids sort by creation time both as BINARY(16) and as strings, so
+ * inserts append to the right edge of the primary key index.
+ */
+public class TimeOrderedUuidGenerator implements IdentifierGenerator {
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private static final int MAX_SEQUENCE = 0xFFF;
+
+	private static long lastMillis;
+	private static int sequence;
+
+	@Override
+	public Serializable generate(SharedSessionContractImplementor session, Object object) {
+		return next();
+	}
+
+	public static UUID next() {
+		long millis;
+		int seq;
+		synchronized (TimeOrderedUuidGenerator.class) {
+			millis = Math.max(System.currentTimeMillis(), lastMillis);
+			if (millis == lastMillis) {
+				if (sequence == MAX_SEQUENCE) {
+					// Counter exhausted, borrow the next millisecond
+					millis++;
+					sequence = 0;
+				} else {
+					sequence++;
+				}
+			} else {
+				sequence = 0;
+			}
+			lastMillis = millis;
+			seq = sequence;
+		}
+		long msb = (millis << 16) | 0x7000L | seq;
+		long lsb = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(msb, lsb);
+	}
+}
@@ -0,0 +1,17 @@
+package com.tao.test.domain.dto;
+
+import java.util.Collection;
+import java.util.Date;
+import lombok.Value;
+
+/**
+ * Approval queue entries reserved for one reviewer until expiresOn, with their approvalId set.
+ * expiresOn is null when the reviewer holds no claim
+ */
+@Value
+public class ApprovalClaimDTO {
+
+	String reviewer;
+	Date expiresOn;
+	Collection<ProductDTO> products;
+}
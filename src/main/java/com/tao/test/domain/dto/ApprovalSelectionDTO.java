@@ -0,0 +1,28 @@
+package com.tao.test.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.tao.test.config.DateFormatConfiguration;
+import java.util.Date;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * Approval queue entries to decide on: either the listed approvalIds, or every entry requested
+ * before requestedBefore for a product priced below maxPrice
+ */
+@Data
+public class ApprovalSelectionDTO {
+
+	List<String> approvalIds;
+	@JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm", timezone = DateFormatConfiguration.TIME_ZONE)
+	Date requestedBefore;
+	Double maxPrice;
+
+	public boolean hasApprovalIds() {
+		return this.approvalIds != null && !this.approvalIds.isEmpty();
+	}
+
+	public boolean hasFilter() {
+		return this.requestedBefore != null || this.maxPrice != null;
+	}
+}
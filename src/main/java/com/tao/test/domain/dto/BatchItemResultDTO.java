@@ -0,0 +1,30 @@
+package com.tao.test.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.tao.test.domain.Product;
+import com.tao.test.domain.enums.BatchItemStatus;
+import lombok.Value;
+
+/**
+ * Outcome of one item of a batch request, index is its position in the request
+ */
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResultDTO {
+
+	int index;
+	BatchItemStatus status;
+	String productId;
+	ProductDTO product;
+	String error;
+
+	public static BatchItemResultDTO saved(int index, Product product) {
+		return new BatchItemResultDTO(index, BatchItemStatus.SAVED,
+				product.getProductId().toString(), new ProductDTO(product), null);
+	}
+
+	public static BatchItemResultDTO failed(int index, BatchItemStatus status, String productId,
+			String error) {
+		return new BatchItemResultDTO(index, status, productId, null, error);
+	}
+}
@@ -0,0 +1,17 @@
+package com.tao.test.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.Collection;
+import lombok.Value;
+
+/**
+ * One line of a streamed bulk operation: the running count and the products of the committed chunk
+ */
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkProgressDTO {
+
+	long processed;
+	Long total;
+	Collection<ProductDTO> products;
+}
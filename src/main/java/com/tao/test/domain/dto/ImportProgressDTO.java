@@ -0,0 +1,24 @@
+package com.tao.test.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.tao.test.domain.enums.ImportStatus;
+import java.util.Date;
+import lombok.Value;
+
+/**
+ * State of a product import, counts are rows of the upload
+ */
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportProgressDTO {
+
+	String importId;
+	ImportStatus status;
+	Date startedOn;
+	Date finishedOn;
+	long rowsRead;
+	long saved;
+	long queuedForApproval;
+	long rejected;
+	String error;
+}
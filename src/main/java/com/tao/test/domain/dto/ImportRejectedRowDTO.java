@@ -0,0 +1,14 @@
+package com.tao.test.domain.dto;
+
+import lombok.Value;
+
+/**
+ * A row of an upload that was not imported, line is its line number in the upload
+ */
+@Value
+public class ImportRejectedRowDTO {
+
+	long line;
+	String error;
+	String row;
+}
@@ -0,0 +1,12 @@
+package com.tao.test.domain.dto;
+
+import javax.validation.constraints.NotBlank;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class ProductBatchUpdateDTO extends ProductUpdateDTO {
+
+	@NotBlank(message = "Please enter the Id of the Product") String productId;
+}
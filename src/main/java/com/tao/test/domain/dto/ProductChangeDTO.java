@@ -0,0 +1,17 @@
+package com.tao.test.domain.dto;
+
+import com.tao.test.domain.enums.ChangeType;
+import java.util.UUID;
+import lombok.Value;
+
+/**
+ * One committed Product change of the change feed, product is the state after it
+ */
+@Value
+public class ProductChangeDTO {
+
+	long seq;
+	ChangeType type;
+	UUID productId;
+	ProductDTO product;
+}
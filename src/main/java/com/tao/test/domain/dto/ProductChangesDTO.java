@@ -0,0 +1,16 @@
+package com.tao.test.domain.dto;
+
+import java.util.List;
+import lombok.Value;
+
+/**
+ * A page of the change feed. next is the since of the following request. resync means changes after
+ * the given since were dropped from the feed, reload the products and continue from next
+ */
+@Value
+public class ProductChangesDTO {
+
+	long next;
+	boolean resync;
+	List<ProductChangeDTO> changes;
+}
@@ -0,0 +1,41 @@
+package com.tao.test.domain.dto;
+
+import com.tao.test.exception.CustomException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+import lombok.Value;
+
+/**
+ * Opaque keyset cursor for the Product listings.
+ * Points at the last row of a page by (createdOn, productId), the same order the listings use.
+ */
+@Value
+public class ProductCursor {
+
+	Date createdOn;
+	UUID productId;
+
+	public static ProductCursor after(ProductDTO product) {
+		return new ProductCursor(new Date(product.getCreatedOn().getTime()),
+				product.getProductId());
+	}
+
+	public String encode() {
+		String raw = this.createdOn.getTime() + ":" + this.productId;
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static ProductCursor decode(String cursor) {
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int separator = raw.indexOf(':');
+			return new ProductCursor(new Date(Long.parseLong(raw.substring(0, separator))),
+					UUID.fromString(raw.substring(separator + 1)));
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new CustomException("Invalid cursor : " + cursor);
+		}
+	}
+}
@@ -1,15 +1,25 @@
 package com.tao.test.domain.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.tao.test.domain.Product;
 import com.tao.test.domain.enums.Status;
 import java.util.Collection;
 import java.util.Date;
+import java.util.UUID;
 import java.util.stream.Collectors;
 import lombok.Data;
 
 @Data
 public class ProductDTO {
 
+	@JsonIgnore
+	UUID productId;
+	/**
+	 * Set in the approval queue listing only, for approve and reject
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	UUID approvalId;
 	String name;
 	double price;
 	Status status;
@@ -17,6 +27,7 @@ public class ProductDTO {
 	Date updatedOn;
 
 	public ProductDTO(Product product) {
+		this.productId = product.getProductId();
 		this.name = product.getName();
 		this.price = product.getPrice();
 		this.status = product.getStatus();
@@ -24,6 +35,28 @@ public class ProductDTO {
 		this.updatedOn = product.getUpdatedOn();
 	}
 
+	/**
+	 * Constructor projection used by the read queries, which skip loading Product entities
+	 */
+	public ProductDTO(UUID productId, String name, double price, Status status, Date createdOn,
+			Date updatedOn) {
+		this.productId = productId;
+		this.name = name;
+		this.price = price;
+		this.status = status;
+		this.createdOn = createdOn;
+		this.updatedOn = updatedOn;
+	}
+
+	/**
+	 * Constructor projection of the approval queue listing
+	 */
+	public ProductDTO(UUID productId, UUID approvalId, String name, double price, Status status,
+			Date createdOn, Date updatedOn) {
+		this(productId, name, price, status, createdOn, updatedOn);
+		this.approvalId = approvalId;
+	}
+
 	public static Collection<ProductDTO> convert(Collection<Product> products) {
 		return products.stream().map(t -> new ProductDTO(t))
 				.collect(Collectors.toList());
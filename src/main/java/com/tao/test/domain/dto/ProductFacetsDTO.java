@@ -0,0 +1,48 @@
+package com.tao.test.domain.dto;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.Value;
+
+/**
+ * Counts of the ACTIVE products matching a name filter, by price range and by posting age
+ */
+@Value
+public class ProductFacetsDTO {
+
+	long total;
+	List<PriceBucket> price;
+	List<PostedWithin> postedWithin;
+
+	/**
+	 * Products priced from (inclusive) up to to (exclusive), to is null for the last, open bucket
+	 */
+	@Value
+	public static class PriceBucket {
+
+		double from;
+		Double to;
+		long count;
+	}
+
+	/**
+	 * Products created on or after since
+	 */
+	@Value
+	public static class PostedWithin {
+
+		int days;
+		Date since;
+		long count;
+	}
+
+	/**
+	 * Start of the "posted within days" window: now minus days, rounded down to the hour so the
+	 * in-memory facets and the SQL fallback count the same products
+	 */
+	public static long postedSince(long now, int days) {
+		long since = now - TimeUnit.DAYS.toMillis(days);
+		return since - Math.floorMod(since, TimeUnit.HOURS.toMillis(1));
+	}
+}
@@ -0,0 +1,46 @@
+package com.tao.test.domain.dto;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import lombok.Value;
+
+/**
+ * Statement statistics since startup, by query shape and by endpoint, with the Hibernate
+ * session statistics. Times are in milliseconds.
+ */
+@Value
+public class QueryDiagnosticsDTO {
+
+	Date since;
+	long statements;
+	long slowStatements;
+	List<Shape> slowest;
+	List<Shape> mostFrequent;
+	List<Endpoint> endpoints;
+	Map<String, Object> hibernate;
+
+	/**
+	 * SQL with whitespace collapsed and placeholder lists, IN or VALUES, of any length folded into one
+	 */
+	@Value
+	public static class Shape {
+
+		String sql;
+		long count;
+		double totalMillis;
+		double avgMillis;
+		double maxMillis;
+		long rows;
+	}
+
+	@Value
+	public static class Endpoint {
+
+		String endpoint;
+		long requests;
+		double avgStatements;
+		long maxStatements;
+		double avgStatementMillis;
+	}
+}
@@ -0,0 +1,13 @@
+package com.tao.test.domain.dto;
+
+import lombok.Value;
+
+/**
+ * Total rows behind a paginated response, exact is false when counting stopped at a cap
+ */
+@Value
+public class TotalCount {
+
+	long count;
+	boolean exact;
+}
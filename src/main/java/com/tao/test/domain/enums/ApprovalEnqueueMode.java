@@ -0,0 +1,6 @@
+package com.tao.test.domain.enums;
+
+public enum ApprovalEnqueueMode {
+	SYNC,
+	OUTBOX
+}
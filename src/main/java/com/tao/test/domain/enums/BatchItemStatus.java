@@ -0,0 +1,8 @@
+package com.tao.test.domain.enums;
+
+public enum BatchItemStatus {
+	SAVED,
+	INVALID,
+	NOT_FOUND,
+	FAILED
+}
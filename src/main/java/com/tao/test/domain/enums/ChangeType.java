@@ -0,0 +1,17 @@
+package com.tao.test.domain.enums;
+
+public enum ChangeType {
+	CREATED,
+	UPDATED,
+	DELETED,
+	APPROVED,
+	REJECTED,
+	/**
+	 * Moved to product_archive, no longer counted or listed
+	 */
+	ARCHIVED,
+	/**
+	 * Moved back from product_archive, previous is null
+	 */
+	RESTORED
+}
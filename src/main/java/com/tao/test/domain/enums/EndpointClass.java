@@ -0,0 +1,10 @@
+package com.tao.test.domain.enums;
+
+/**
+ * Groups of endpoints that get their own executor, so load on one group cannot starve the others
+ */
+public enum EndpointClass {
+	READ,
+	WRITE,
+	MODERATION
+}
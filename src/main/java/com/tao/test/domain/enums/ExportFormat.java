@@ -0,0 +1,6 @@
+package com.tao.test.domain.enums;
+
+public enum ExportFormat {
+	NDJSON,
+	CSV
+}
@@ -0,0 +1,31 @@
+package com.tao.test.domain.enums;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+public enum IdStorage {
+	CHAR,
+	BINARY;
+
+	/**
+	 * @return the id as bound by plain JDBC statements, a string or 16 bytes
+	 */
+	public Object toJdbc(UUID id) {
+		if (this == CHAR) {
+			return id.toString();
+		}
+		return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits())
+				.putLong(id.getLeastSignificantBits()).array();
+	}
+
+	/**
+	 * @param value id column value as read by plain JDBC
+	 */
+	public UUID fromJdbc(Object value) {
+		if (this == CHAR) {
+			return UUID.fromString(value.toString());
+		}
+		ByteBuffer bytes = ByteBuffer.wrap((byte[]) value);
+		return new UUID(bytes.getLong(), bytes.getLong());
+	}
+}
@@ -0,0 +1,7 @@
+package com.tao.test.domain.enums;
+
+public enum ImportStatus {
+	RUNNING,
+	COMPLETED,
+	FAILED
+}
@@ -0,0 +1,11 @@
+package com.tao.test.exception;
+
+public class ConflictException extends RuntimeException {
+
+	private static final long serialVersionUID = -2373165047912930474L;
+
+	public ConflictException(String message) {
+		super(message);
+	}
+
+}
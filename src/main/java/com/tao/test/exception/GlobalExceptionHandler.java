@@ -14,6 +14,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -77,6 +78,55 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
 		return new ResponseEntity<>(exceptionResponse, HttpStatus.NOT_FOUND);
 	}
 
+	@ExceptionHandler(ServiceUnavailableException.class)
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	public final ResponseEntity<ExceptionResponse> handleServiceUnavailableExceptions(
+			ServiceUnavailableException ex, WebRequest request, HttpServletRequest req) {
+		ExceptionResponse exceptionResponse = new ExceptionResponse(ex.getLocalizedMessage(),
+				request.getDescription(false));
+		HttpHeaders headers = new HttpHeaders();
+		if (ex.getRetryAfter() > 0) {
+			headers.set(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfter()));
+		}
+
+		log.warn(exceptionResponse.getMessage());
+		return new ResponseEntity<>(exceptionResponse, headers, HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
+	@ExceptionHandler(PreconditionFailedException.class)
+	@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+	public final ResponseEntity<ExceptionResponse> handlePreconditionFailedExceptions(Exception ex,
+			WebRequest request, HttpServletRequest req) {
+		ExceptionResponse exceptionResponse = new ExceptionResponse(ex.getLocalizedMessage(),
+				request.getDescription(false));
+
+		log.warn(exceptionResponse.getMessage());
+		return new ResponseEntity<>(exceptionResponse, HttpStatus.PRECONDITION_FAILED);
+	}
+
+	@ExceptionHandler(ConflictException.class)
+	@ResponseStatus(HttpStatus.CONFLICT)
+	public final ResponseEntity<ExceptionResponse> handleConflictExceptions(Exception ex,
+			WebRequest request, HttpServletRequest req) {
+		ExceptionResponse exceptionResponse = new ExceptionResponse(ex.getLocalizedMessage(),
+				request.getDescription(false));
+
+		log.warn(exceptionResponse.getMessage());
+		return new ResponseEntity<>(exceptionResponse, HttpStatus.CONFLICT);
+	}
+
+	@ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+	@ResponseStatus(HttpStatus.CONFLICT)
+	public final ResponseEntity<ExceptionResponse> handleOptimisticLockingExceptions(Exception ex,
+			WebRequest request, HttpServletRequest req) {
+		ExceptionResponse exceptionResponse = new ExceptionResponse(
+				"The Product was changed concurrently, please reload and retry",
+				request.getDescription(false));
+
+		log.warn(ex.getMessage());
+		return new ResponseEntity<>(exceptionResponse, HttpStatus.CONFLICT);
+	}
+
 	@Override
 	protected ResponseEntity<Object> handleHttpMessageNotReadable(
 			HttpMessageNotReadableException ex, HttpHeaders headers, HttpStatus status,
@@ -0,0 +1,11 @@
+package com.tao.test.exception;
+
+public class PreconditionFailedException extends RuntimeException {
+
+	private static final long serialVersionUID = 4711265804176093158L;
+
+	public PreconditionFailedException(String message) {
+		super(message);
+	}
+
+}
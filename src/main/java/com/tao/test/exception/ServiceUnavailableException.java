@@ -0,0 +1,25 @@
+package com.tao.test.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+
+	private static final long serialVersionUID = -6190426630145532017L;
+
+	/**
+	 * Seconds for the Retry-After header, 0 for none
+	 */
+	private final long retryAfter;
+
+	public ServiceUnavailableException(String message) {
+		this(message, 0);
+	}
+
+	public ServiceUnavailableException(String message, long retryAfter) {
+		super(message);
+		this.retryAfter = retryAfter;
+	}
+
+	public long getRetryAfter() {
+		return this.retryAfter;
+	}
+
+}
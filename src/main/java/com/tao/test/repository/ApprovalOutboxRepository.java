@@ -0,0 +1,27 @@
+package com.tao.test.repository;
+
+import com.tao.test.domain.ApprovalOutbox;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ApprovalOutboxRepository extends JpaRepository<ApprovalOutbox, UUID> {
+	// Lock timeout -2 is SKIP LOCKED where the dialect supports it, so dispatchers do not wait on each other
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+	@Query("select o from approval_outbox o order by o.createdOn, o.outboxId")
+	List<ApprovalOutbox> findOldest(PageRequest pageable);
+	@Modifying
+	@Query("delete from approval_outbox o where o.outboxId in ?1")
+	int deleteOutbox(Collection<UUID> outboxIds);
+}
@@ -1,20 +1,57 @@
 package com.tao.test.repository;
 
 import com.tao.test.domain.ApprovalQueue;
-import com.tao.test.domain.Product;
+import com.tao.test.domain.dto.ProductDTO;
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ApprovalQueueRepository extends JpaRepository<ApprovalQueue, String> {
 	Optional<ApprovalQueue> findByProductId(UUID productId);
-	@Query("Select u from product u, approval_queue t where u.productId = t.productId order by t.requestDate")
-	Collection<Product> findAllApprovalQueue(PageRequest of);
+	Collection<ApprovalQueue> findAllByProductIdIn(Collection<UUID> productIds);
+	@Query("select new com.tao.test.domain.dto.ProductDTO(u.productId, t.approvalId, u.name, u.price, u.status, u.createdOn, u.updatedOn) from product u, approval_queue t where u.productId = t.productId order by t.requestDate")
+	Collection<ProductDTO> findAllApprovalQueue(PageRequest of);
 	Optional<ApprovalQueue> findByApprovalId(UUID approvalId);
-	void deleteAllByApprovalId(UUID approvalId);
+	Collection<ApprovalQueue> findAllByApprovalIdIn(Collection<UUID> approvalIds);
+	@Query("select t from approval_queue t, product u where u.productId = t.productId and t.requestDate < ?1 and u.price < ?2 order by t.requestDate")
+	List<ApprovalQueue> findAllRequestedBefore(Date requestedBefore, double maxPrice,
+			PageRequest pageable);
+	@Query("select count(t) from approval_queue t, product u where u.productId = t.productId and t.requestDate < ?1 and u.price < ?2")
+	long countRequestedBefore(Date requestedBefore, double maxPrice);
+	@Modifying
+	@Query("delete from approval_queue t where t.approvalId in ?1")
+	int deleteApprovals(Collection<UUID> approvalIds);
+	// A null reviewer matches no claim
+	@Modifying
+	@Query("delete from approval_queue t where t.approvalId = ?1 and (t.claimedBy is null or t.claimExpiresOn < ?3 or t.claimedBy = ?2)")
+	int deleteUnlessClaimed(UUID approvalId, String reviewer, Date now);
+	@Query("select t.approvalId from approval_queue t where t.approvalId > ?1 order by t.approvalId")
+	List<UUID> findIdsAfter(UUID after, PageRequest pageable);
+	// Lock timeout -2 is SKIP LOCKED where the dialect supports it, so reviewers claiming together get disjoint entries
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+	@Query("select t from approval_queue t where t.claimExpiresOn is null or t.claimExpiresOn < ?1 order by t.requestDate")
+	List<ApprovalQueue> findClaimable(Date now, PageRequest pageable);
+	@Modifying
+	@Query("update approval_queue t set t.claimExpiresOn = ?2 where t.claimedBy = ?1 and t.claimExpiresOn >= ?3")
+	int renewClaims(String reviewer, Date expiresOn, Date now);
+	@Modifying
+	@Query("update approval_queue t set t.claimedBy = null, t.claimExpiresOn = null where t.claimedBy = ?1")
+	int releaseClaims(String reviewer);
+	@Query("select new com.tao.test.domain.dto.ProductDTO(u.productId, t.approvalId, u.name, u.price, u.status, u.createdOn, u.updatedOn) from product u, approval_queue t where u.productId = t.productId and t.claimedBy = ?1 and t.claimExpiresOn >= ?2 order by t.requestDate")
+	Collection<ProductDTO> findClaimedBy(String reviewer, Date now);
+	@Query("select max(t.claimExpiresOn) from approval_queue t where t.claimedBy = ?1 and t.claimExpiresOn >= ?2")
+	Date findClaimExpiry(String reviewer, Date now);
 }
@@ -0,0 +1,34 @@
+package com.tao.test.repository;
+
+import com.tao.test.domain.ProductArchive;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import javax.persistence.LockModeType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductArchiveRepository extends JpaRepository<ProductArchive, UUID> {
+	Optional<ProductArchive> findByProductId(UUID productId);
+	@Query("select a.productId from product_archive a where a.productId > ?1 order by a.productId")
+	List<UUID> findIdsAfter(UUID after, PageRequest pageable);
+	@Modifying
+	@Query("insert into product_archive (productId, name, price, status, createdOn, updatedOn, version, archivedOn) select u.productId, u.name, u.price, u.status, u.createdOn, u.updatedOn, u.version, current_timestamp from product u where u.productId in ?1")
+	int archive(Collection<UUID> productIds);
+	// Serializes restores of the same product, the later one finds the archived row gone
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select a from product_archive a where a.productId in ?1")
+	List<ProductArchive> findAllForRestore(Collection<UUID> productIds);
+	@Modifying
+	@Query("insert into product (productId, name, price, status, createdOn, updatedOn, version) select a.productId, a.name, a.price, a.status, a.createdOn, a.updatedOn, a.version from product_archive a where a.productId in ?1")
+	int restore(Collection<UUID> productIds);
+	@Modifying
+	@Query("delete from product_archive a where a.productId in ?1")
+	int deleteArchived(Collection<UUID> productIds);
+}
@@ -1,21 +1,65 @@
 package com.tao.test.repository;
 
 import com.tao.test.domain.Product;
+import com.tao.test.domain.dto.ProductDTO;
 import com.tao.test.domain.enums.Status;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, UUID> {
-	Collection<Product> findByStatusOrderByCreatedOnDesc(Status active, PageRequest pageable);
-	@Query("select u from product u where u.name like %?1% and u.price between ?2 and ?3 and u.createdOn between ?4 and ?5 and u.status = ?6 order by u.createdOn desc")
-	Collection<Product> filterSearch(String productName, double minPrice, double maxPrice,
+	@Query("select new com.tao.test.domain.dto.ProductDTO(u.productId, u.name, u.price, u.status, u.createdOn, u.updatedOn) from product u where u.status = ?1 order by u.createdOn desc, u.productId desc")
+	Collection<ProductDTO> findByStatus(Status active, PageRequest pageable);
+	@Query("select new com.tao.test.domain.dto.ProductDTO(u.productId, u.name, u.price, u.status, u.createdOn, u.updatedOn) from product u where u.status = ?1 and (u.createdOn < ?2 or (u.createdOn = ?2 and u.productId < ?3)) order by u.createdOn desc, u.productId desc")
+	Collection<ProductDTO> findByStatusBefore(Status active, Date createdOn, UUID productId,
+			PageRequest pageable);
+	@Query("select new com.tao.test.domain.dto.ProductDTO(u.productId, u.name, u.price, u.status, u.createdOn, u.updatedOn) from product u where u.name like %?1% and u.price between ?2 and ?3 and u.createdOn between ?4 and ?5 and u.status = ?6 order by u.createdOn desc, u.productId desc")
+	Collection<ProductDTO> filterSearch(String productName, double minPrice, double maxPrice,
 			Date minPostedDate, Date maxPostedDate, Status active, PageRequest pageable);
+	@Query("select new com.tao.test.domain.dto.ProductDTO(u.productId, u.name, u.price, u.status, u.createdOn, u.updatedOn) from product u where u.name like %?1% and u.price between ?2 and ?3 and u.createdOn between ?4 and ?5 and u.status = ?6 and (u.createdOn < ?7 or (u.createdOn = ?7 and u.productId < ?8)) order by u.createdOn desc, u.productId desc")
+	Collection<ProductDTO> filterSearchBefore(String productName, double minPrice, double maxPrice,
+			Date minPostedDate, Date maxPostedDate, Status active, Date createdOn, UUID productId,
+			PageRequest pageable);
+	@Query("select count(u) from product u where u.name like %?1% and u.price >= ?2 and u.price < ?3 and u.createdOn >= ?4 and u.status = ?5")
+	long countSearch(String productName, double minPrice, double maxPriceExclusive,
+			Date minPostedDate, Status active);
+	@Query(value = "select count(*) from (select 1 from product u where u.name like concat('%', ?1, '%') and u.price between ?2 and ?3 and u.created_on between ?4 and ?5 and u.status = ?6 limit ?7) t", nativeQuery = true)
+	long countSearchUpTo(String productName, double minPrice, double maxPrice,
+			Date minPostedDate, Date maxPostedDate, int activeOrdinal, long limit);
+	@Query("select u.status, count(u) from product u group by u.status")
+	List<Object[]> countGroupByStatus();
+	long countByStatus(Status status);
+	@Query("select new com.tao.test.domain.dto.ProductDTO(u.productId, u.name, u.price, u.status, u.createdOn, u.updatedOn) from product u where u.productId in ?1 and u.status = ?2")
+	Collection<ProductDTO> findAllByIdAndStatus(Collection<UUID> productIds, Status active);
 	Optional<Product> findByProductId(UUID productId);
+	@Modifying(clearAutomatically = true)
+	@Query("update product u set u.status = ?1, u.updatedOn = ?2, u.version = u.version + 1 where u.productId in ?3")
+	int updateStatus(Status status, Date updatedOn, Collection<UUID> productIds);
+	// Products waiting for approval, or about to, stay hot. Locked rows are being changed and are skipped
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+	@Query("select u from product u where u.status in ?1 and u.updatedOn < ?2 and not exists (select t from approval_queue t where t.productId = u.productId) and not exists (select o from approval_outbox o where o.productId = u.productId)")
+	List<Product> findArchivable(Collection<Status> statuses, Date updatedBefore,
+			PageRequest pageable);
+	// Locking read sees rows committed by other transactions since this one started, such as restores
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select u from product u where u.productId in ?1")
+	List<Product> findAllForWrite(Collection<UUID> productIds);
+	@Query("select u.productId from product u where u.productId > ?1 order by u.productId")
+	List<UUID> findIdsAfter(UUID after, PageRequest pageable);
+	@Modifying
+	@Query("delete from product u where u.productId in ?1")
+	int deleteProducts(Collection<UUID> productIds);
 }
@@ -0,0 +1,24 @@
+package com.tao.test.service;
+
+import com.tao.test.domain.dto.ApprovalClaimDTO;
+
+public interface ApprovalClaimService {
+
+	/**
+	 * Claims up to count of the oldest unclaimed or expired approval queue entries and renews the
+	 * reviewer's other claims, entries locked by a concurrent claim are skipped rather than waited for
+	 */
+	ApprovalClaimDTO claim(String reviewer, int count);
+
+	ApprovalClaimDTO fetchClaims(String reviewer);
+
+	/**
+	 * Extends the lease of the reviewer's unexpired claims, expired ones may already be claimed by others
+	 */
+	ApprovalClaimDTO renewClaims(String reviewer);
+
+	/**
+	 * @return number of entries handed back to the queue
+	 */
+	int releaseClaims(String reviewer);
+}
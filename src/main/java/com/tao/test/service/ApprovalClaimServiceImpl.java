@@ -0,0 +1,95 @@
+package com.tao.test.service;
+
+import com.tao.test.domain.ApprovalQueue;
+import com.tao.test.domain.dto.ApprovalClaimDTO;
+import com.tao.test.exception.CustomException;
+import com.tao.test.repository.ApprovalQueueRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Date;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Hands out disjoint batches of the approval queue to reviewers. A claim is a lease of
+ * app.approval.claim.lease milliseconds stored on the entry; once it expires the entry is claimable
+ * again without any cleanup, so a reviewer who walks away never holds entries for longer.
+ */
+@Service
+public class ApprovalClaimServiceImpl implements ApprovalClaimService {
+
+	private final ApprovalQueueRepository approvalQueueRepository;
+	private final long leaseMillis;
+	private final int maxCount;
+	private final Counter claimed;
+
+	@Autowired
+	public ApprovalClaimServiceImpl(ApprovalQueueRepository approvalQueueRepository,
+			MeterRegistry meterRegistry, @Value("${app.approval.claim.lease:300000}") long leaseMillis,
+			@Value("${app.approval.claim.max-count:50}") int maxCount) {
+		this.approvalQueueRepository = approvalQueueRepository;
+		this.leaseMillis = leaseMillis;
+		this.maxCount = maxCount;
+		this.claimed = Counter.builder("product.approval.claimed")
+				.description("Approval queue entries claimed by reviewers").register(meterRegistry);
+	}
+
+	@Override
+	@Transactional
+	public ApprovalClaimDTO claim(String reviewer, int count) {
+		checkReviewer(reviewer);
+		if (count < 1 || count > this.maxCount) {
+			throw new CustomException("Please claim 1 to " + this.maxCount + " entries at a time");
+		}
+		Date now = new Date();
+		Date expiresOn = new Date(now.getTime() + this.leaseMillis);
+		this.approvalQueueRepository.renewClaims(reviewer, expiresOn, now);
+		List<ApprovalQueue> approvals = this.approvalQueueRepository.findClaimable(now,
+				PageRequest.of(0, count));
+		for (ApprovalQueue approval : approvals) {
+			approval.setClaimedBy(reviewer);
+			approval.setClaimExpiresOn(expiresOn);
+		}
+		this.claimed.increment(approvals.size());
+		return new ApprovalClaimDTO(reviewer, expiresOn,
+				this.approvalQueueRepository.findClaimedBy(reviewer, now));
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public ApprovalClaimDTO fetchClaims(String reviewer) {
+		checkReviewer(reviewer);
+		Date now = new Date();
+		return new ApprovalClaimDTO(reviewer,
+				this.approvalQueueRepository.findClaimExpiry(reviewer, now),
+				this.approvalQueueRepository.findClaimedBy(reviewer, now));
+	}
+
+	@Override
+	@Transactional
+	public ApprovalClaimDTO renewClaims(String reviewer) {
+		checkReviewer(reviewer);
+		Date now = new Date();
+		Date expiresOn = new Date(now.getTime() + this.leaseMillis);
+		this.approvalQueueRepository.renewClaims(reviewer, expiresOn, now);
+		return new ApprovalClaimDTO(reviewer, expiresOn,
+				this.approvalQueueRepository.findClaimedBy(reviewer, now));
+	}
+
+	@Override
+	@Transactional
+	public int releaseClaims(String reviewer) {
+		checkReviewer(reviewer);
+		return this.approvalQueueRepository.releaseClaims(reviewer);
+	}
+
+	private static void checkReviewer(String reviewer) {
+		if (reviewer == null || reviewer.trim().isEmpty() || reviewer.length() > 255) {
+			throw new CustomException("Please enter a reviewer of at most 255 characters");
+		}
+	}
+}
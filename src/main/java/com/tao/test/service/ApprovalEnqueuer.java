@@ -0,0 +1,70 @@
+package com.tao.test.service;
+
+import com.tao.test.domain.ApprovalOutbox;
+import com.tao.test.domain.ApprovalQueue;
+import com.tao.test.domain.enums.ApprovalEnqueueMode;
+import com.tao.test.repository.ApprovalOutboxRepository;
+import com.tao.test.repository.ApprovalQueueRepository;
+import com.tao.test.service.event.ApprovalQueueChangedEvent;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Puts products into the approval queue, in the caller's transaction.
+ * app.approval.enqueue=SYNC writes approval_queue directly, skipping products already queued.
+ * OUTBOX only inserts an approval_outbox row, ApprovalOutboxDispatcher moves it into the queue later.
+ */
+@Component
+public class ApprovalEnqueuer {
+
+	private final ApprovalQueueRepository approvalQueueRepository;
+	private final ApprovalOutboxRepository approvalOutboxRepository;
+	private final ApplicationEventPublisher eventPublisher;
+	private final ApprovalEnqueueMode mode;
+
+	@Autowired
+	public ApprovalEnqueuer(ApprovalQueueRepository approvalQueueRepository,
+			ApprovalOutboxRepository approvalOutboxRepository,
+			ApplicationEventPublisher eventPublisher,
+			@Value("${app.approval.enqueue:SYNC}") ApprovalEnqueueMode mode) {
+		this.approvalQueueRepository = approvalQueueRepository;
+		this.approvalOutboxRepository = approvalOutboxRepository;
+		this.eventPublisher = eventPublisher;
+		this.mode = mode;
+	}
+
+	public void enqueue(UUID productId) {
+		if (this.mode == ApprovalEnqueueMode.OUTBOX) {
+			this.approvalOutboxRepository.save(new ApprovalOutbox(productId));
+		} else if (!this.approvalQueueRepository.findByProductId(productId).isPresent()) {
+			this.approvalQueueRepository.save(new ApprovalQueue(productId));
+			this.eventPublisher.publishEvent(new ApprovalQueueChangedEvent(1));
+		}
+	}
+
+	public void enqueueAll(Collection<UUID> productIds) {
+		if (productIds.isEmpty()) {
+			return;
+		}
+		if (this.mode == ApprovalEnqueueMode.OUTBOX) {
+			this.approvalOutboxRepository.saveAll(productIds.stream().map(ApprovalOutbox::new)
+					.collect(Collectors.toList()));
+			return;
+		}
+		Set<UUID> missing = new LinkedHashSet<>(productIds);
+		this.approvalQueueRepository.findAllByProductIdIn(missing)
+				.forEach(approval -> missing.remove(approval.getProductId()));
+		List<ApprovalQueue> approvals = missing.stream().map(ApprovalQueue::new)
+				.collect(Collectors.toList());
+		this.approvalQueueRepository.saveAll(approvals);
+		this.eventPublisher.publishEvent(new ApprovalQueueChangedEvent(approvals.size()));
+	}
+}
@@ -0,0 +1,97 @@
+package com.tao.test.service;
+
+import com.tao.test.domain.ApprovalOutbox;
+import com.tao.test.domain.ApprovalQueue;
+import com.tao.test.repository.ApprovalOutboxRepository;
+import com.tao.test.repository.ApprovalQueueRepository;
+import com.tao.test.service.event.ApprovalQueueChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Drains approval_outbox into approval_queue, oldest first, app.approval.outbox.batch-size rows per
+ * transaction. Requests for the same product collapse into one queue entry with the earliest request
+ * date, products already queued are skipped. The unique index on approval_queue.productId fails a
+ * batch racing another dispatcher for the same product, it is retried on the next poll and then
+ * skips the entry the other one created.
+ */
+@Component
+@Slf4j
+public class ApprovalOutboxDispatcher {
+
+	private final ApprovalOutboxRepository approvalOutboxRepository;
+	private final ApprovalQueueRepository approvalQueueRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final ApplicationEventPublisher eventPublisher;
+	private final int batchSize;
+	private final Counter dispatched;
+
+	@Autowired
+	public ApprovalOutboxDispatcher(ApprovalOutboxRepository approvalOutboxRepository,
+			ApprovalQueueRepository approvalQueueRepository, TransactionTemplate transactionTemplate,
+			ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+			@Value("${app.approval.outbox.batch-size:500}") int batchSize) {
+		this.approvalOutboxRepository = approvalOutboxRepository;
+		this.approvalQueueRepository = approvalQueueRepository;
+		this.transactionTemplate = transactionTemplate;
+		this.eventPublisher = eventPublisher;
+		this.batchSize = batchSize;
+		this.dispatched = Counter.builder("product.approval.outbox.dispatched")
+				.description("Approval queue entries created from the outbox").register(meterRegistry);
+		Gauge.builder("product.approval.outbox.depth", approvalOutboxRepository,
+				ApprovalOutboxRepository::count)
+				.description("Outbox rows waiting to be dispatched").register(meterRegistry);
+	}
+
+	/**
+	 * Also drains rows left behind after switching back to SYNC
+	 */
+	@Scheduled(fixedDelayString = "${app.approval.outbox.poll-interval:500}")
+	public void dispatch() {
+		try {
+			Integer drained;
+			do {
+				drained = this.transactionTemplate.execute(status -> dispatchBatch());
+			} while (drained != null && drained == this.batchSize);
+		} catch (RuntimeException e) {
+			log.error("Approval outbox dispatch failed, retrying on the next poll", e);
+		}
+	}
+
+	private int dispatchBatch() {
+		List<ApprovalOutbox> batch = this.approvalOutboxRepository.findOldest(
+				PageRequest.of(0, this.batchSize));
+		if (batch.isEmpty()) {
+			return 0;
+		}
+		// Oldest first, so the first request per product keeps its date
+		Map<UUID, ApprovalQueue> approvals = new LinkedHashMap<>();
+		for (ApprovalOutbox request : batch) {
+			approvals.putIfAbsent(request.getProductId(),
+					new ApprovalQueue(request.getProductId(), request.getCreatedOn()));
+		}
+		this.approvalQueueRepository.findAllByProductIdIn(approvals.keySet())
+				.forEach(approval -> approvals.remove(approval.getProductId()));
+		this.approvalQueueRepository.saveAll(new ArrayList<>(approvals.values()));
+		this.approvalOutboxRepository.deleteOutbox(batch.stream().map(ApprovalOutbox::getOutboxId)
+				.collect(Collectors.toList()));
+		this.eventPublisher.publishEvent(new ApprovalQueueChangedEvent(approvals.size()));
+		this.dispatched.increment(approvals.size());
+		return batch.size();
+	}
+}
@@ -0,0 +1,33 @@
+package com.tao.test.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rules deciding when a Product has to go through the approval queue
+ */
+@Component
+public class ApprovalPolicy {
+
+	private final double maxAutoApprovedPrice;
+
+	@Autowired
+	public ApprovalPolicy(@Value("${app.max.auto-approve.price}") double maxAutoApprovedPrice) {
+		this.maxAutoApprovedPrice = maxAutoApprovedPrice;
+	}
+
+	/**
+	 * New products priced above the auto-approve price need approval
+	 */
+	public boolean isApprovalRequired(double price) {
+		return price > this.maxAutoApprovedPrice;
+	}
+
+	/**
+	 * Updates raising the price by more than 50% of its previous price need approval
+	 */
+	public boolean isPriceJump(double previousPrice, double price) {
+		return previousPrice + (previousPrice / 2) < price;
+	}
+}
@@ -0,0 +1,22 @@
+package com.tao.test.service;
+
+import com.tao.test.domain.Product;
+import com.tao.test.domain.dto.ApprovalSelectionDTO;
+import com.tao.test.domain.dto.BulkProgressDTO;
+import com.tao.test.domain.enums.Status;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+public interface BulkApprovalService {
+
+	/**
+	 * Sets the selected products to the decided status in a single transaction
+	 */
+	Collection<Product> decide(ApprovalSelectionDTO selection, Status decision);
+
+	/**
+	 * Same as decide, committing chunk by chunk and reporting after every commit, for selections too big for one transaction
+	 */
+	void decideInChunks(ApprovalSelectionDTO selection, Status decision,
+			Consumer<BulkProgressDTO> progress);
+}
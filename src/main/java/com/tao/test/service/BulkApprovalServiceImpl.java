@@ -0,0 +1,194 @@
+package com.tao.test.service;
+
+import com.tao.test.domain.ApprovalQueue;
+import com.tao.test.domain.Product;
+import com.tao.test.domain.dto.ApprovalSelectionDTO;
+import com.tao.test.domain.dto.BulkProgressDTO;
+import com.tao.test.domain.dto.ProductDTO;
+import com.tao.test.domain.enums.ChangeType;
+import com.tao.test.domain.enums.Status;
+import com.tao.test.exception.CustomException;
+import com.tao.test.repository.ApprovalQueueRepository;
+import com.tao.test.repository.ProductRepository;
+import com.tao.test.service.event.ApprovalQueueChangedEvent;
+import com.tao.test.service.event.ProductChangedEvent;
+import com.tao.test.service.event.ProductSnapshot;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Decides approval queue entries set-wise: per chunk one select of the products, one UPDATE of
+ * their status and one DELETE of the queue rows, instead of four round trips per entry.
+ * Reviewer claims are not checked, a bulk decision overrides them.
+ */
+@Service
+public class BulkApprovalServiceImpl implements BulkApprovalService {
+
+	private final ProductRepository productRepository;
+	private final ApprovalQueueRepository approvalQueueRepository;
+	private final ApplicationEventPublisher eventPublisher;
+	private final TransactionTemplate transactionTemplate;
+	private final int chunkSize;
+	private final int maxSize;
+
+	@Autowired
+	public BulkApprovalServiceImpl(ProductRepository productRepository,
+			ApprovalQueueRepository approvalQueueRepository,
+			ApplicationEventPublisher eventPublisher, TransactionTemplate transactionTemplate,
+			@Value("${app.approval.bulk.chunk-size:1000}") int chunkSize,
+			@Value("${app.approval.bulk.max-size:10000}") int maxSize) {
+		this.productRepository = productRepository;
+		this.approvalQueueRepository = approvalQueueRepository;
+		this.eventPublisher = eventPublisher;
+		this.transactionTemplate = transactionTemplate;
+		this.chunkSize = chunkSize;
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	@Transactional
+	public Collection<Product> decide(ApprovalSelectionDTO selection, Status decision) {
+		Supplier<Collection<ApprovalQueue>> chunks = chunks(selection, this.maxSize);
+		List<Product> decided = new ArrayList<>();
+		for (Collection<ApprovalQueue> chunk = chunks.get(); chunk != null; chunk = chunks.get()) {
+			decided.addAll(decideChunk(chunk, decision));
+		}
+		return decided;
+	}
+
+	@Override
+	public void decideInChunks(ApprovalSelectionDTO selection, Status decision,
+			Consumer<BulkProgressDTO> progress) {
+		Long total = selection.hasApprovalIds() ? Long.valueOf(selection.getApprovalIds().size())
+				: Long.valueOf(this.approvalQueueRepository.countRequestedBefore(
+						requestedBefore(selection), maxPrice(selection)));
+		Supplier<Collection<ApprovalQueue>> chunks = chunks(selection, Integer.MAX_VALUE);
+		long processed = 0;
+		while (true) {
+			Collection<Product> decided = this.transactionTemplate.execute(status -> {
+				Collection<ApprovalQueue> chunk = chunks.get();
+				return chunk == null ? null : decideChunk(chunk, decision);
+			});
+			if (decided == null) {
+				return;
+			}
+			processed += decided.size();
+			progress.accept(new BulkProgressDTO(processed, total, ProductDTO.convert(decided)));
+		}
+	}
+
+	/**
+	 * Selections by approvalIds or by filter over the limit are both rejected, rather than decided in part
+	 *
+	 * @return supplier of the queue entries chunk by chunk, null once the selection is exhausted
+	 */
+	private Supplier<Collection<ApprovalQueue>> chunks(ApprovalSelectionDTO selection, int limit) {
+		if (selection.hasApprovalIds()) {
+			List<UUID> approvalIds = parse(selection.getApprovalIds());
+			if (approvalIds.size() > limit) {
+				throw tooLarge(limit);
+			}
+			Iterator<List<UUID>> partitions = partition(approvalIds).iterator();
+			return () -> partitions.hasNext()
+					? this.approvalQueueRepository.findAllByApprovalIdIn(partitions.next()) : null;
+		}
+		if (!selection.hasFilter()) {
+			throw new CustomException(
+					"Please select approvals by approvalIds or by requestedBefore and maxPrice");
+		}
+		Date requestedBefore = requestedBefore(selection);
+		double maxPrice = maxPrice(selection);
+		if (limit < Integer.MAX_VALUE
+				&& this.approvalQueueRepository.countRequestedBefore(requestedBefore, maxPrice) > limit) {
+			throw tooLarge(limit);
+		}
+		// Entries queued since the count are left for the next request
+		int[] remaining = {limit};
+		// Decided entries are deleted, so every query returns the next oldest ones
+		return () -> {
+			if (remaining[0] <= 0) {
+				return null;
+			}
+			List<ApprovalQueue> chunk = this.approvalQueueRepository.findAllRequestedBefore(
+					requestedBefore, maxPrice,
+					PageRequest.of(0, Math.min(this.chunkSize, remaining[0])));
+			remaining[0] -= chunk.size();
+			return chunk.isEmpty() ? null : chunk;
+		};
+	}
+
+	private static CustomException tooLarge(int limit) {
+		return new CustomException("Selection exceeds the maximum of " + limit
+				+ " approvals, request application/x-ndjson to process it in chunks");
+	}
+
+	private Collection<Product> decideChunk(Collection<ApprovalQueue> approvals, Status decision) {
+		if (approvals.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Set<UUID> productIds = approvals.stream().map(ApprovalQueue::getProductId)
+				.collect(Collectors.toSet());
+		List<UUID> approvalIds = approvals.stream().map(ApprovalQueue::getApprovalId)
+				.collect(Collectors.toList());
+		Date now = new Date();
+		List<Product> products = this.productRepository.findAllById(productIds);
+		this.productRepository.updateStatus(decision, now, productIds);
+		int dequeued = this.approvalQueueRepository.deleteApprovals(approvalIds);
+		this.eventPublisher.publishEvent(new ApprovalQueueChangedEvent(-dequeued));
+
+		ChangeType type = decision == Status.ACTIVE ? ChangeType.APPROVED : ChangeType.REJECTED;
+		List<Product> decided = new ArrayList<>(products.size());
+		for (Product product : products) {
+			ProductSnapshot previous = ProductSnapshot.of(product);
+			ProductSnapshot current = new ProductSnapshot(product.getProductId(), product.getName(),
+					product.getPrice(), decision, previous.getCreatedOn(), now.getTime());
+			this.eventPublisher.publishEvent(new ProductChangedEvent(type, previous, current));
+			decided.add(current.toProduct());
+		}
+		return decided;
+	}
+
+	private Date requestedBefore(ApprovalSelectionDTO selection) {
+		return selection.getRequestedBefore() == null ? new Date() : selection.getRequestedBefore();
+	}
+
+	private double maxPrice(ApprovalSelectionDTO selection) {
+		return selection.getMaxPrice() == null ? Double.MAX_VALUE : selection.getMaxPrice();
+	}
+
+	private List<UUID> parse(List<String> approvalIds) {
+		List<UUID> ids = new ArrayList<>(approvalIds.size());
+		for (String approvalId : approvalIds) {
+			try {
+				ids.add(UUID.fromString(approvalId));
+			} catch (IllegalArgumentException | NullPointerException e) {
+				throw new CustomException("Invalid Approval Id : " + approvalId);
+			}
+		}
+		return ids;
+	}
+
+	private List<List<UUID>> partition(List<UUID> ids) {
+		List<List<UUID>> partitions = new ArrayList<>();
+		for (int from = 0; from < ids.size(); from += this.chunkSize) {
+			partitions.add(ids.subList(from, Math.min(ids.size(), from + this.chunkSize)));
+		}
+		return partitions;
+	}
+}
@@ -0,0 +1,167 @@
+package com.tao.test.service;
+
+import com.tao.test.domain.Product;
+import com.tao.test.domain.ProductArchive;
+import com.tao.test.domain.enums.ChangeType;
+import com.tao.test.domain.enums.Status;
+import com.tao.test.repository.ProductArchiveRepository;
+import com.tao.test.repository.ProductRepository;
+import com.tao.test.service.event.ProductChangedEvent;
+import com.tao.test.service.event.ProductSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves INACTIVE and REJECTED products not updated for app.archive.min-age days from product to
+ * product_archive, app.archive.batch-size rows per transaction with app.archive.pause milliseconds
+ * between transactions, so listings and searches stop scanning past them. Products in the approval
+ * queue or its outbox stay. Lookups by id fall back to the archive and writes restore the product.
+ * Both publish a ProductChangedEvent, ARCHIVED and RESTORED, so listeners drop and re-add the
+ * product. Off by default.
+ */
+@Component
+@Slf4j
+public class ProductArchiver {
+
+	private static final List<Status> ARCHIVED_STATUSES = Arrays.asList(Status.INACTIVE,
+			Status.REJECTED);
+
+	private final ProductRepository productRepository;
+	private final ProductArchiveRepository productArchiveRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final ApplicationEventPublisher eventPublisher;
+	private final boolean enabled;
+	private final long minAgeMillis;
+	private final int batchSize;
+	private final long pauseMillis;
+	private final Counter archived;
+	private final Counter restored;
+
+	@Autowired
+	public ProductArchiver(ProductRepository productRepository,
+			ProductArchiveRepository productArchiveRepository,
+			TransactionTemplate transactionTemplate, ApplicationEventPublisher eventPublisher,
+			MeterRegistry meterRegistry,
+			@Value("${app.archive.enabled:false}") boolean enabled,
+			@Value("${app.archive.min-age:30}") int minAgeDays,
+			@Value("${app.archive.batch-size:500}") int batchSize,
+			@Value("${app.archive.pause:100}") long pauseMillis) {
+		this.productRepository = productRepository;
+		this.productArchiveRepository = productArchiveRepository;
+		this.transactionTemplate = transactionTemplate;
+		this.eventPublisher = eventPublisher;
+		this.enabled = enabled;
+		this.minAgeMillis = TimeUnit.DAYS.toMillis(minAgeDays);
+		this.batchSize = batchSize;
+		this.pauseMillis = pauseMillis;
+		this.archived = Counter.builder("product.archived")
+				.description("Products moved to product_archive").register(meterRegistry);
+		this.restored = Counter.builder("product.archive.restored")
+				.description("Products moved back from product_archive by a write")
+				.register(meterRegistry);
+	}
+
+	@Scheduled(initialDelayString = "${app.archive.interval:3600000}",
+			fixedDelayString = "${app.archive.interval:3600000}")
+	public void archive() {
+		if (!this.enabled) {
+			return;
+		}
+		Date updatedBefore = new Date(System.currentTimeMillis() - this.minAgeMillis);
+		long total = 0;
+		try {
+			Integer moved;
+			do {
+				moved = this.transactionTemplate.execute(status -> archiveBatch(updatedBefore));
+				total += moved == null ? 0 : moved;
+			} while (moved != null && moved == this.batchSize && pause());
+		} catch (RuntimeException e) {
+			log.error("Product archival failed, retrying on the next run", e);
+		}
+		if (total > 0) {
+			log.info("Archived {} products not updated since {}", total, updatedBefore);
+		}
+	}
+
+	private int archiveBatch(Date updatedBefore) {
+		List<ProductSnapshot> products = this.productRepository.findArchivable(ARCHIVED_STATUSES,
+				updatedBefore, PageRequest.of(0, this.batchSize)).stream()
+				.map(ProductSnapshot::of).collect(Collectors.toList());
+		if (products.isEmpty()) {
+			return 0;
+		}
+		List<UUID> productIds = products.stream().map(ProductSnapshot::getProductId)
+				.collect(Collectors.toList());
+		this.productArchiveRepository.archive(productIds);
+		this.productRepository.deleteProducts(productIds);
+		products.forEach(product -> this.eventPublisher.publishEvent(
+				new ProductChangedEvent(ChangeType.ARCHIVED, product, product)));
+		this.archived.increment(products.size());
+		return products.size();
+	}
+
+	/**
+	 * @return false when interrupted, ending the run
+	 */
+	private boolean pause() {
+		try {
+			TimeUnit.MILLISECONDS.sleep(this.pauseMillis);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * @return the archived Product, detached
+	 */
+	@Transactional(readOnly = true)
+	public Optional<Product> findArchived(UUID productId) {
+		return this.productArchiveRepository.findByProductId(productId)
+				.map(ProductArchive::toProduct);
+	}
+
+	/**
+	 * Moves the archived ones of the products back to product, in the transaction of the caller.
+	 * Concurrent restores of a product wait for each other, all but the first restore nothing, so
+	 * callers read the products with ProductRepository.findAllForWrite afterwards either way
+	 *
+	 * @return number of products restored by this call
+	 */
+	@Transactional
+	public int restore(Collection<UUID> productIds) {
+		if (productIds.isEmpty()) {
+			return 0;
+		}
+		List<ProductArchive> archived = this.productArchiveRepository.findAllForRestore(productIds);
+		if (archived.isEmpty()) {
+			return 0;
+		}
+		List<UUID> archivedIds = archived.stream().map(ProductArchive::getProductId)
+				.collect(Collectors.toList());
+		int restored = this.productArchiveRepository.restore(archivedIds);
+		this.productArchiveRepository.deleteArchived(archivedIds);
+		archived.forEach(product -> this.eventPublisher.publishEvent(new ProductChangedEvent(
+				ChangeType.RESTORED, null, ProductSnapshot.of(product.toProduct()))));
+		this.restored.increment(restored);
+		return restored;
+	}
+}
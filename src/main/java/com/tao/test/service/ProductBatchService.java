@@ -0,0 +1,13 @@
+package com.tao.test.service;
+
+import com.tao.test.domain.dto.BatchItemResultDTO;
+import com.tao.test.domain.dto.ProductBatchUpdateDTO;
+import com.tao.test.domain.dto.ProductUpdateDTO;
+import java.util.List;
+
+public interface ProductBatchService {
+
+	List<BatchItemResultDTO> createProducts(List<ProductUpdateDTO> products);
+
+	List<BatchItemResultDTO> updateProducts(List<ProductBatchUpdateDTO> products);
+}
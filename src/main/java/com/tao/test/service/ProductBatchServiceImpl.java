@@ -0,0 +1,232 @@
+package com.tao.test.service;
+
+import com.tao.test.domain.Product;
+import com.tao.test.domain.dto.BatchItemResultDTO;
+import com.tao.test.domain.dto.ProductBatchUpdateDTO;
+import com.tao.test.domain.dto.ProductUpdateDTO;
+import com.tao.test.domain.enums.BatchItemStatus;
+import com.tao.test.domain.enums.ChangeType;
+import com.tao.test.domain.enums.Status;
+import com.tao.test.exception.CustomException;
+import com.tao.test.repository.ProductRepository;
+import com.tao.test.service.event.ProductChangedEvent;
+import com.tao.test.service.event.ProductSnapshot;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Writes batches in chunks of app.batch.chunk-size items, one transaction per chunk, so that Hibernate
+ * sends the inserts and updates as JDBC batches. A failing chunk is retried item by item, so one bad
+ * item only fails itself.
+ */
+@Service
+@Slf4j
+public class ProductBatchServiceImpl implements ProductBatchService {
+
+	private final ProductRepository productRepository;
+	private final ApprovalPolicy approvalPolicy;
+	private final ApprovalEnqueuer approvalEnqueuer;
+	private final ProductArchiver productArchiver;
+	private final ApplicationEventPublisher eventPublisher;
+	private final Validator validator;
+	private final TransactionTemplate transactionTemplate;
+	private final int chunkSize;
+	private final int maxBatchSize;
+
+	@Autowired
+	public ProductBatchServiceImpl(ProductRepository productRepository,
+			ApprovalPolicy approvalPolicy, ApprovalEnqueuer approvalEnqueuer,
+			ProductArchiver productArchiver, ApplicationEventPublisher eventPublisher,
+			Validator validator, TransactionTemplate transactionTemplate,
+			@Value("${app.batch.chunk-size:500}") int chunkSize,
+			@Value("${app.batch.max-size:10000}") int maxBatchSize) {
+		this.productRepository = productRepository;
+		this.approvalPolicy = approvalPolicy;
+		this.approvalEnqueuer = approvalEnqueuer;
+		this.productArchiver = productArchiver;
+		this.eventPublisher = eventPublisher;
+		this.validator = validator;
+		this.transactionTemplate = transactionTemplate;
+		this.chunkSize = chunkSize;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	@Override
+	public List<BatchItemResultDTO> createProducts(List<ProductUpdateDTO> products) {
+		return process(products, this::create);
+	}
+
+	@Override
+	public List<BatchItemResultDTO> updateProducts(List<ProductBatchUpdateDTO> products) {
+		return process(products, this::update);
+	}
+
+	private <T extends ProductUpdateDTO> List<BatchItemResultDTO> process(List<T> items,
+			Function<List<Item<T>>, List<BatchItemResultDTO>> writer) {
+		if (items.size() > this.maxBatchSize) {
+			throw new CustomException("Batch size exceeds the maximum of " + this.maxBatchSize);
+		}
+		BatchItemResultDTO[] results = new BatchItemResultDTO[items.size()];
+		List<Item<T>> chunk = new ArrayList<>(this.chunkSize);
+		for (int index = 0; index < items.size(); index++) {
+			T value = items.get(index);
+			String violations = validate(value);
+			if (violations != null) {
+				results[index] = BatchItemResultDTO.failed(index, BatchItemStatus.INVALID,
+						productIdOf(value), violations);
+				continue;
+			}
+			chunk.add(new Item<>(index, value));
+			if (chunk.size() == this.chunkSize) {
+				write(chunk, writer, results);
+				chunk = new ArrayList<>(this.chunkSize);
+			}
+		}
+		if (!chunk.isEmpty()) {
+			write(chunk, writer, results);
+		}
+		return Arrays.asList(results);
+	}
+
+	private <T extends ProductUpdateDTO> void write(List<Item<T>> chunk,
+			Function<List<Item<T>>, List<BatchItemResultDTO>> writer, BatchItemResultDTO[] results) {
+		try {
+			this.transactionTemplate.execute(status -> writer.apply(chunk))
+					.forEach(result -> results[result.getIndex()] = result);
+		} catch (RuntimeException e) {
+			if (chunk.size() == 1) {
+				Item<T> item = chunk.get(0);
+				results[item.index] = BatchItemResultDTO.failed(item.index, BatchItemStatus.FAILED,
+						productIdOf(item.value), e.getMessage());
+				return;
+			}
+			log.warn("Batch chunk of {} items failed, retrying item by item", chunk.size(), e);
+			for (Item<T> item : chunk) {
+				write(Collections.singletonList(item), writer, results);
+			}
+		}
+	}
+
+	private List<BatchItemResultDTO> create(List<Item<ProductUpdateDTO>> chunk) {
+		List<Product> products = new ArrayList<>(chunk.size());
+		for (Item<ProductUpdateDTO> item : chunk) {
+			ProductUpdateDTO product = item.value;
+			if (this.approvalPolicy.isApprovalRequired(product.getPrice())) {
+				product.setStatus(Status.PENDING_APPROVAL);
+			}
+			products.add(new Product(product.getName(), product.getPrice(), product.getStatus()));
+		}
+		// Ids are generated in memory on persist, nothing is flushed before the commit
+		this.productRepository.saveAll(products);
+		List<UUID> approvals = new ArrayList<>();
+		List<BatchItemResultDTO> results = new ArrayList<>(chunk.size());
+		for (int i = 0; i < chunk.size(); i++) {
+			Product product = products.get(i);
+			if (this.approvalPolicy.isApprovalRequired(product.getPrice())) {
+				approvals.add(product.getProductId());
+			}
+			results.add(BatchItemResultDTO.saved(chunk.get(i).index, product));
+			publish(ChangeType.CREATED, null, product);
+		}
+		this.approvalEnqueuer.enqueueAll(approvals);
+		return results;
+	}
+
+	private List<BatchItemResultDTO> update(List<Item<ProductBatchUpdateDTO>> chunk) {
+		List<BatchItemResultDTO> results = new ArrayList<>(chunk.size());
+		Map<Item<ProductBatchUpdateDTO>, UUID> productIds = new HashMap<>();
+		for (Item<ProductBatchUpdateDTO> item : chunk) {
+			try {
+				productIds.put(item, UUID.fromString(item.value.getProductId()));
+			} catch (IllegalArgumentException e) {
+				results.add(BatchItemResultDTO.failed(item.index, BatchItemStatus.INVALID,
+						item.value.getProductId(), "Invalid Product Id : " + item.value.getProductId()));
+			}
+		}
+		Map<UUID, Product> products = this.productRepository.findAllById(productIds.values())
+				.stream().collect(Collectors.toMap(Product::getProductId, Function.identity()));
+		Set<UUID> missing = productIds.values().stream().filter(id -> !products.containsKey(id))
+				.collect(Collectors.toSet());
+		if (!missing.isEmpty()) {
+			// Also finds the ones restored by a concurrent write meanwhile
+			this.productArchiver.restore(missing);
+			this.productRepository.findAllForWrite(missing)
+					.forEach(product -> products.put(product.getProductId(), product));
+		}
+
+		Set<UUID> approvals = new LinkedHashSet<>();
+		for (Item<ProductBatchUpdateDTO> item : chunk) {
+			UUID productId = productIds.get(item);
+			if (productId == null) {
+				continue;
+			}
+			Product product = products.get(productId);
+			if (product == null) {
+				results.add(BatchItemResultDTO.failed(item.index, BatchItemStatus.NOT_FOUND,
+						item.value.getProductId(), "Invalid Product Id : " + productId));
+				continue;
+			}
+			ProductSnapshot previous = ProductSnapshot.of(product);
+			if (this.approvalPolicy.isPriceJump(product.getPrice(), item.value.getPrice())) {
+				item.value.setStatus(Status.PENDING_APPROVAL);
+				approvals.add(productId);
+			}
+			// Managed entity, written by the batched update at commit
+			product.updateFromDTO(item.value);
+			results.add(BatchItemResultDTO.saved(item.index, product));
+			publish(ChangeType.UPDATED, previous, product);
+		}
+		this.approvalEnqueuer.enqueueAll(approvals);
+		return results;
+	}
+
+	private String validate(ProductUpdateDTO product) {
+		if (product == null) {
+			return "Missing Product";
+		}
+		Set<ConstraintViolation<ProductUpdateDTO>> violations = this.validator.validate(product);
+		if (violations.isEmpty()) {
+			return null;
+		}
+		return violations.stream().map(v -> v.getPropertyPath() + ": " + v.getMessage())
+				.sorted().collect(Collectors.joining(", "));
+	}
+
+	private static String productIdOf(ProductUpdateDTO product) {
+		return product instanceof ProductBatchUpdateDTO
+				? ((ProductBatchUpdateDTO) product).getProductId() : null;
+	}
+
+	private void publish(ChangeType type, ProductSnapshot previous, Product current) {
+		this.eventPublisher.publishEvent(
+				new ProductChangedEvent(type, previous, ProductSnapshot.of(current)));
+	}
+
+	private static final class Item<T> {
+
+		private final int index;
+		private final T value;
+
+		private Item(int index, T value) {
+			this.index = index;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package com.tao.test.service;
+
+import com.tao.test.domain.enums.ExportFormat;
+import java.io.OutputStream;
+import java.util.Date;
+
+public interface ProductExportService {
+
+	void exportActiveProducts(String productName, double minPrice, double maxPrice,
+			Date minPostedDate, Date maxPostedDate, ExportFormat format, OutputStream out);
+}
@@ -0,0 +1,200 @@
+package com.tao.test.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tao.test.domain.enums.ExportFormat;
+import com.tao.test.domain.enums.IdStorage;
+import com.tao.test.domain.enums.Status;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Locale;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Streams the ACTIVE products from a forward-only JDBC cursor straight into the response, so memory use
+ * does not depend on the catalogue size. MySQL only streams rows with a fetch size of
+ * Integer.MIN_VALUE, other databases get app.export.fetch-size.
+ */
+@Service
+public class ProductExportServiceImpl implements ProductExportService {
+
+	private static final String EXPORT_QUERY = "select product_id, name, price, status, created_on, "
+			+ "updated_on from product where status = ? and name like ? and price between ? and ? "
+			+ "and created_on between ? and ? order by created_on desc, product_id desc";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final ObjectMapper objectMapper;
+	private final IdStorage idStorage;
+	private final int fetchSize;
+	private final int flushRows;
+
+	@Autowired
+	public ProductExportServiceImpl(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+			@Value("${app.id.storage:CHAR}") IdStorage idStorage,
+			@Value("${app.export.fetch-size:1000}") int fetchSize,
+			@Value("${app.export.flush-rows:1000}") int flushRows) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.objectMapper = objectMapper;
+		this.idStorage = idStorage;
+		this.fetchSize = fetchSize;
+		this.flushRows = flushRows;
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void exportActiveProducts(String productName, double minPrice, double maxPrice,
+			Date minPostedDate, Date maxPostedDate, ExportFormat format, OutputStream out) {
+		RowWriter writer = format == ExportFormat.CSV ? new CsvRowWriter(out)
+				: new NdjsonRowWriter(out);
+		long[] rows = {0};
+		this.jdbcTemplate.query(connection -> {
+			PreparedStatement statement = connection.prepareStatement(EXPORT_QUERY,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			statement.setFetchSize(isMySql(connection) ? Integer.MIN_VALUE : this.fetchSize);
+			statement.setInt(1, Status.ACTIVE.ordinal());
+			statement.setString(2, "%" + productName + "%");
+			statement.setDouble(3, minPrice);
+			statement.setDouble(4, maxPrice);
+			statement.setTimestamp(5, new Timestamp(minPostedDate.getTime()));
+			statement.setTimestamp(6, new Timestamp(maxPostedDate.getTime()));
+			return statement;
+		}, (ResultSet resultSet) -> {
+			try {
+				writer.write(this.idStorage.fromJdbc(resultSet.getObject(1)), resultSet.getString(2),
+						resultSet.getDouble(3), Status.values()[resultSet.getInt(4)],
+						resultSet.getTimestamp(5), resultSet.getTimestamp(6));
+				if (++rows[0] % this.flushRows == 0) {
+					writer.flush();
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static boolean isMySql(Connection connection) throws SQLException {
+		return connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT)
+				.contains("mysql");
+	}
+
+	private interface RowWriter {
+
+		void write(UUID productId, String name, double price, Status status, Date createdOn,
+				Date updatedOn) throws IOException;
+
+		void flush() throws IOException;
+	}
+
+	/**
+	 * One JSON object per line, with the fields and date format of the ProductDTO responses plus the productId
+	 */
+	private final class NdjsonRowWriter implements RowWriter {
+
+		private final JsonGenerator generator;
+
+		private NdjsonRowWriter(OutputStream out) {
+			try {
+				this.generator = objectMapper.createGenerator(out)
+						.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.generator.setRootValueSeparator(null);
+		}
+
+		@Override
+		public void write(UUID productId, String name, double price, Status status, Date createdOn,
+				Date updatedOn) throws IOException {
+			this.generator.writeStartObject();
+			this.generator.writeStringField("productId", productId.toString());
+			this.generator.writeStringField("name", name);
+			this.generator.writeNumberField("price", price);
+			this.generator.writeStringField("status", status.name());
+			this.generator.writeObjectField("createdOn", createdOn);
+			this.generator.writeObjectField("updatedOn", updatedOn);
+			this.generator.writeEndObject();
+			this.generator.writeRaw('\n');
+		}
+
+		@Override
+		public void flush() throws IOException {
+			this.generator.flush();
+		}
+	}
+
+	/**
+	 * RFC 4180 rows with a header line, dates as ISO-8601 instants
+	 */
+	private static final class CsvRowWriter implements RowWriter {
+
+		private final Writer writer;
+
+		private CsvRowWriter(OutputStream out) {
+			this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+					BUFFER_SIZE);
+			try {
+				this.writer.write("productId,name,price,status,createdOn,updatedOn\r\n");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void write(UUID productId, String name, double price, Status status, Date createdOn,
+				Date updatedOn) throws IOException {
+			this.writer.write(productId.toString());
+			this.writer.write(',');
+			writeText(name);
+			this.writer.write(',');
+			this.writer.write(Double.toString(price));
+			this.writer.write(',');
+			this.writer.write(status.name());
+			this.writer.write(',');
+			this.writer.write(createdOn.toInstant().toString());
+			this.writer.write(',');
+			this.writer.write(updatedOn.toInstant().toString());
+			this.writer.write("\r\n");
+		}
+
+		private void writeText(String text) throws IOException {
+			if (text == null) {
+				return;
+			}
+			if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0
+					&& text.indexOf('\r') < 0) {
+				this.writer.write(text);
+				return;
+			}
+			this.writer.write('"');
+			this.writer.write(text.replace("\"", "\"\""));
+			this.writer.write('"');
+		}
+
+		@Override
+		public void flush() throws IOException {
+			this.writer.flush();
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package com.tao.test.service;
+
+import com.tao.test.domain.dto.ImportProgressDTO;
+import com.tao.test.domain.dto.ImportRejectedRowDTO;
+import com.tao.test.domain.enums.ExportFormat;
+import java.io.InputStream;
+import java.util.Collection;
+
+public interface ProductImportService {
+
+	ImportProgressDTO importProducts(InputStream upload, ExportFormat format);
+
+	Collection<ImportProgressDTO> fetchImports();
+
+	ImportProgressDTO fetchImport(String importId);
+
+	Collection<ImportRejectedRowDTO> fetchRejectedRows(String importId, int pageNumber, int pageSize);
+}
@@ -0,0 +1,339 @@
+package com.tao.test.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tao.test.domain.dto.BatchItemResultDTO;
+import com.tao.test.domain.dto.ImportProgressDTO;
+import com.tao.test.domain.dto.ImportRejectedRowDTO;
+import com.tao.test.domain.dto.ProductUpdateDTO;
+import com.tao.test.domain.enums.BatchItemStatus;
+import com.tao.test.domain.enums.ExportFormat;
+import com.tao.test.domain.enums.Status;
+import com.tao.test.exception.CustomException;
+import com.tao.test.exception.ResourceNotFoundException;
+import com.tao.test.service.imports.ImportJob;
+import com.tao.test.service.imports.ProductRowParser;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Imports uploads in the background: the request thread only copies the upload to a temporary file,
+ * then an import thread parses it line by line into batches of app.import.batch-size rows and
+ * app.import.writers threads write them with ProductBatchService. At most app.import.queue-capacity
+ * batches wait in between, a full queue stops reading the file. The file is deleted once written.
+ *
+ * Unlike parsing the request body as it arrives, this buffers the whole upload on disk so the
+ * request can be answered before the rows are written. The copy is therefore capped at
+ * app.import.max-bytes, a larger upload is answered with 413, and the writers pace the file
+ * instead of the client.
+ */
+@Service
+@Slf4j
+public class ProductImportServiceImpl implements ProductImportService {
+
+	private static final List<Row> END = Collections.emptyList();
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private final ProductBatchService productBatchService;
+	private final ObjectMapper objectMapper;
+	private final int batchSize;
+	private final int queueCapacity;
+	private final int writers;
+	private final int maxRejectedRows;
+	private final long maxBytes;
+	private final Semaphore running;
+	private final Map<String, ImportJob> jobs;
+
+	private final AtomicInteger threadCount = new AtomicInteger();
+	// Runs the imports and their writers, both bounded by app.import.max-running
+	private final ExecutorService importPool = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "product-import-" + this.threadCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	@Autowired
+	public ProductImportServiceImpl(ProductBatchService productBatchService, ObjectMapper objectMapper,
+			@Value("${app.import.batch-size:500}") int batchSize,
+			@Value("${app.import.queue-capacity:4}") int queueCapacity,
+			@Value("${app.import.writers:2}") int writers,
+			@Value("${app.import.max-running:2}") int maxRunning,
+			@Value("${app.import.max-rejected-rows:10000}") int maxRejectedRows,
+			@Value("${app.import.history:20}") int history,
+			@Value("${app.import.max-bytes:104857600}") long maxBytes) {
+		this.productBatchService = productBatchService;
+		this.objectMapper = objectMapper;
+		this.batchSize = batchSize;
+		this.queueCapacity = queueCapacity;
+		this.writers = writers;
+		this.maxRejectedRows = maxRejectedRows;
+		this.maxBytes = maxBytes;
+		this.running = new Semaphore(maxRunning);
+		this.jobs = Collections.synchronizedMap(new LinkedHashMap<String, ImportJob>() {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ImportJob> eldest) {
+				return size() > history;
+			}
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.importPool.shutdownNow();
+	}
+
+	@Override
+	public ImportProgressDTO importProducts(InputStream upload, ExportFormat format) {
+		if (!this.running.tryAcquire()) {
+			throw new CustomException("Too many imports running, please retry later");
+		}
+		Path file = null;
+		boolean started = false;
+		try {
+			file = spool(upload);
+			ImportJob job = new ImportJob(this.maxRejectedRows);
+			this.jobs.put(job.getImportId(), job);
+			Path spooled = file;
+			this.importPool.execute(() -> run(job, spooled, format));
+			started = true;
+			return job.toDTO();
+		} finally {
+			if (!started) {
+				delete(file);
+				this.running.release();
+			}
+		}
+	}
+
+	/**
+	 * Copies the upload to a temporary file, stopping with 413 once it exceeds app.import.max-bytes
+	 */
+	private Path spool(InputStream upload) {
+		Path file = null;
+		try {
+			file = Files.createTempFile("product-import-", ".upload");
+			try (OutputStream out = Files.newOutputStream(file)) {
+				byte[] buffer = new byte[READ_BUFFER_SIZE];
+				long size = 0;
+				for (int read = upload.read(buffer); read != -1; read = upload.read(buffer)) {
+					size += read;
+					if (size > this.maxBytes) {
+						throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+								"Upload exceeds the maximum of " + this.maxBytes + " bytes");
+					}
+					out.write(buffer, 0, read);
+				}
+			}
+			return file;
+		} catch (IOException e) {
+			delete(file);
+			throw new UncheckedIOException("Upload could not be stored", e);
+		} catch (RuntimeException e) {
+			delete(file);
+			throw e;
+		}
+	}
+
+	private void run(ImportJob job, Path file, ExportFormat format) {
+		try (InputStream upload = Files.newInputStream(file)) {
+			run(job, upload, format);
+		} catch (IOException e) {
+			log.warn("Import {} could not read the upload", job.getImportId(), e);
+			job.fail(e.getMessage());
+		} finally {
+			delete(file);
+			this.running.release();
+		}
+	}
+
+	private static void delete(Path file) {
+		if (file == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			log.warn("Import upload {} could not be deleted", file, e);
+		}
+	}
+
+	private void run(ImportJob job, InputStream upload, ExportFormat format) {
+		BlockingQueue<List<Row>> queue = new ArrayBlockingQueue<>(this.queueCapacity);
+		List<Future<?>> consumers = new ArrayList<>(this.writers);
+		for (int i = 0; i < this.writers; i++) {
+			consumers.add(this.importPool.submit(() -> write(job, queue)));
+		}
+		try {
+			read(job, upload, format, queue);
+		} catch (IOException | RuntimeException e) {
+			log.warn("Import {} stopped reading the upload", job.getImportId(), e);
+			job.fail(e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			job.fail("Import interrupted");
+		}
+		try {
+			for (Future<?> consumer : consumers) {
+				while (!consumer.isDone() && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+					// Writers still draining the queue
+				}
+			}
+			for (Future<?> consumer : consumers) {
+				consumer.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			job.fail("Import interrupted");
+		} catch (ExecutionException e) {
+			job.fail(e.getCause().getMessage());
+		}
+		job.complete();
+		log.info("Import {} finished: {}", job.getImportId(), job.toDTO());
+	}
+
+	/**
+	 * Producer: parses the upload and hands full batches to the writers, waiting while the queue is full
+	 */
+	private void read(ImportJob job, InputStream upload, ExportFormat format,
+			BlockingQueue<List<Row>> queue) throws IOException, InterruptedException {
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(upload, StandardCharsets.UTF_8), READ_BUFFER_SIZE);
+		ProductRowParser parser = format == ExportFormat.NDJSON
+				? ProductRowParser.ndjson(this.objectMapper) : null;
+		List<Row> batch = new ArrayList<>(this.batchSize);
+		long lineNumber = 0;
+		for (String line = reader.readLine(); line != null && !job.isFailed();
+				line = reader.readLine()) {
+			lineNumber++;
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+			if (parser == null) {
+				parser = ProductRowParser.csv(line);
+				continue;
+			}
+			job.rowRead();
+			try {
+				batch.add(new Row(lineNumber, line, parser.parse(line)));
+			} catch (IllegalArgumentException e) {
+				job.reject(lineNumber, e.getMessage(), line);
+				continue;
+			}
+			if (batch.size() == this.batchSize) {
+				put(job, queue, batch);
+				batch = new ArrayList<>(this.batchSize);
+			}
+		}
+		if (!batch.isEmpty()) {
+			put(job, queue, batch);
+		}
+	}
+
+	private void put(ImportJob job, BlockingQueue<List<Row>> queue, List<Row> batch)
+			throws InterruptedException {
+		while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+			if (job.isFailed()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Consumer: writes batches until it takes END, after a failure it only drains the queue
+	 */
+	private void write(ImportJob job, BlockingQueue<List<Row>> queue) {
+		try {
+			for (List<Row> batch = queue.take(); batch != END; batch = queue.take()) {
+				if (job.isFailed()) {
+					continue;
+				}
+				try {
+					List<BatchItemResultDTO> results = this.productBatchService.createProducts(
+							batch.stream().map(row -> row.product).collect(Collectors.toList()));
+					for (BatchItemResultDTO result : results) {
+						if (result.getStatus() == BatchItemStatus.SAVED) {
+							job.saved(result.getProduct().getStatus() == Status.PENDING_APPROVAL);
+						} else {
+							Row row = batch.get(result.getIndex());
+							job.reject(row.line, result.getError(), row.text);
+						}
+					}
+				} catch (RuntimeException e) {
+					log.error("Import {} could not write a batch", job.getImportId(), e);
+					job.fail(e.getMessage());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			job.fail("Import interrupted");
+		}
+	}
+
+	@Override
+	public Collection<ImportProgressDTO> fetchImports() {
+		synchronized (this.jobs) {
+			return this.jobs.values().stream().map(ImportJob::toDTO).collect(Collectors.toList());
+		}
+	}
+
+	@Override
+	public ImportProgressDTO fetchImport(String importId) {
+		return job(importId).toDTO();
+	}
+
+	@Override
+	public Collection<ImportRejectedRowDTO> fetchRejectedRows(String importId, int pageNumber,
+			int pageSize) {
+		return job(importId).rejectedRows((pageNumber - 1) * pageSize, pageSize);
+	}
+
+	private ImportJob job(String importId) {
+		ImportJob job = this.jobs.get(importId);
+		if (job == null) {
+			throw new ResourceNotFoundException("Invalid Import Id : " + importId);
+		}
+		return job;
+	}
+
+	private static final class Row {
+
+		private final long line;
+		private final String text;
+		private final ProductUpdateDTO product;
+
+		private Row(long line, String text, ProductUpdateDTO product) {
+			this.line = line;
+			this.text = text;
+			this.product = product;
+		}
+	}
+}
@@ -1,26 +1,61 @@
 package com.tao.test.service;
 
 import com.tao.test.domain.Product;
+import com.tao.test.domain.dto.ProductCursor;
+import com.tao.test.domain.dto.ProductDTO;
+import com.tao.test.domain.dto.ProductFacetsDTO;
 import com.tao.test.domain.dto.ProductUpdateDTO;
+import com.tao.test.domain.dto.TotalCount;
 import java.util.Collection;
 import java.util.Date;
 
 public interface ProductService {
 
-	Collection<Product> fetchAllActiveProducts(int pageNumber, int pageSize);
+	Collection<ProductDTO> fetchAllActiveProducts(int pageNumber, int pageSize);
 
-	Collection<Product> searchProducts(String productName, double minPrice, double maxPrice,
+	Collection<ProductDTO> fetchAllActiveProducts(ProductCursor cursor, int pageSize);
+
+	TotalCount countActiveProducts();
+
+	Collection<ProductDTO> searchProducts(String productName, double minPrice, double maxPrice,
 			Date minPostedDate, Date maxPostedDate, int pageNumber, int pageSize);
 
+	Collection<ProductDTO> searchProducts(String productName, double minPrice, double maxPrice,
+			Date minPostedDate, Date maxPostedDate, ProductCursor cursor, int pageSize);
+
+	TotalCount countSearchResults(String productName, double minPrice, double maxPrice,
+			Date minPostedDate, Date maxPostedDate);
+
+	ProductFacetsDTO fetchFacets(String productName, double[] priceBounds, int[] postedWithinDays);
+
 	Product createProduct(ProductUpdateDTO product);
 
+	Product fetchProduct(String productId);
+
 	Product updateProduct(String productId, ProductUpdateDTO product);
 
+	/**
+	 * @param expectedVersion fails with PreconditionFailedException when the Product has another version, null to skip the check
+	 */
+	Product updateProduct(String productId, ProductUpdateDTO product, Long expectedVersion);
+
 	String deleteProduct(String productId);
 
-	Collection<Product> fetchApprovalQueue(int pageNumber, int pageSize);
+	Collection<ProductDTO> fetchApprovalQueue(int pageNumber, int pageSize);
+
+	TotalCount countApprovalQueue();
 
 	Product approveProduct(String approvalId);
 
+	/**
+	 * @param reviewer fails with ConflictException when another reviewer holds an unexpired claim on the entry, null for none
+	 */
+	Product approveProduct(String approvalId, String reviewer);
+
 	Product rejectProduct(String approvalId);
+
+	/**
+	 * @param reviewer fails with ConflictException when another reviewer holds an unexpired claim on the entry, null for none
+	 */
+	Product rejectProduct(String approvalId, String reviewer);
 }
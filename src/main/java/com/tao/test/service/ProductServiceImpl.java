@@ -2,102 +2,314 @@ package com.tao.test.service;
 
 import com.tao.test.domain.ApprovalQueue;
 import com.tao.test.domain.Product;
+import com.tao.test.domain.dto.ProductCursor;
+import com.tao.test.domain.dto.ProductDTO;
+import com.tao.test.domain.dto.ProductFacetsDTO;
 import com.tao.test.domain.dto.ProductUpdateDTO;
+import com.tao.test.domain.dto.TotalCount;
+import com.tao.test.domain.enums.ChangeType;
 import com.tao.test.domain.enums.Status;
+import com.tao.test.exception.ConflictException;
+import com.tao.test.exception.CustomException;
+import com.tao.test.exception.PreconditionFailedException;
 import com.tao.test.exception.ResourceNotFoundException;
 import com.tao.test.repository.ApprovalQueueRepository;
 import com.tao.test.repository.ProductRepository;
+import com.tao.test.service.cache.ProductCache;
+import com.tao.test.service.counts.ProductCounters;
+import com.tao.test.service.counts.SearchCountCache;
+import com.tao.test.service.event.ApprovalQueueChangedEvent;
+import com.tao.test.service.event.ProductChangedEvent;
+import com.tao.test.service.event.ProductSnapshot;
+import com.tao.test.service.feed.ActiveProductFeed;
+import com.tao.test.service.search.ProductSearchIndex;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
+@Timed(value = "product.service", histogram = true)
 public class ProductServiceImpl implements ProductService {
 
+	private static final int MAX_FACET_BOUNDS = 50;
+
 	private final ProductRepository productRepository;
 	private final ApprovalQueueRepository approvalQueueRepository;
-	private final double maxAutoApprovedPrice;
+	private final ProductSearchIndex productSearchIndex;
+	private final ActiveProductFeed activeProductFeed;
+	private final ApplicationEventPublisher eventPublisher;
+	private final ApprovalPolicy approvalPolicy;
+	private final ApprovalEnqueuer approvalEnqueuer;
+	private final ProductCounters productCounters;
+	private final SearchCountCache searchCountCache;
+	private final ProductArchiver productArchiver;
+	private final ProductCache productCache;
+	private final Counter autoApproved;
+	private final Counter queued;
 
 	@Autowired
 	public ProductServiceImpl(ProductRepository productRepository,
-			ApprovalQueueRepository approvalQueueRepository,@Value("${app.max.auto-approve.price}") double maxAutoApprovedPrice) {
+			ApprovalQueueRepository approvalQueueRepository, ProductSearchIndex productSearchIndex,
+			ActiveProductFeed activeProductFeed, ApplicationEventPublisher eventPublisher,
+			ApprovalPolicy approvalPolicy, ApprovalEnqueuer approvalEnqueuer,
+			ProductCounters productCounters, SearchCountCache searchCountCache,
+			ProductArchiver productArchiver, ProductCache productCache,
+			MeterRegistry meterRegistry) {
 		this.productRepository = productRepository;
 		this.approvalQueueRepository = approvalQueueRepository;
-		this.maxAutoApprovedPrice = maxAutoApprovedPrice;
+		this.productSearchIndex = productSearchIndex;
+		this.activeProductFeed = activeProductFeed;
+		this.eventPublisher = eventPublisher;
+		this.approvalPolicy = approvalPolicy;
+		this.approvalEnqueuer = approvalEnqueuer;
+		this.productCounters = productCounters;
+		this.searchCountCache = searchCountCache;
+		this.productArchiver = productArchiver;
+		this.productCache = productCache;
+		this.autoApproved = Counter.builder("product.created").tag("outcome", "auto_approved")
+				.description("Products created without approval").register(meterRegistry);
+		this.queued = Counter.builder("product.created").tag("outcome", "queued")
+				.description("Products created into the approval queue").register(meterRegistry);
+		Gauge.builder("product.approval.queue.depth", productCounters,
+				counters -> counters.approvalQueue().orElse(-1))
+				.description("Entries waiting in the approval queue").register(meterRegistry);
 	}
 
 	@Override
-	public Collection<Product> fetchAllActiveProducts(int pageNumber, int pageSize) {
-		return this.productRepository.findByStatusOrderByCreatedOnDesc(Status.ACTIVE,
-				PageRequest.of(pageNumber - 1, pageSize));
+	@Transactional(readOnly = true)
+	public Collection<ProductDTO> fetchAllActiveProducts(int pageNumber, int pageSize) {
+		return this.activeProductFeed.page(pageNumber, pageSize).orElseGet(
+				() -> this.productRepository.findByStatus(Status.ACTIVE,
+						PageRequest.of(pageNumber - 1, pageSize)));
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<ProductDTO> fetchAllActiveProducts(ProductCursor cursor, int pageSize) {
+		return this.activeProductFeed.page(cursor, pageSize).orElseGet(
+				() -> this.productRepository.findByStatusBefore(Status.ACTIVE, cursor.getCreatedOn(),
+						cursor.getProductId(), PageRequest.of(0, pageSize)));
 	}
 
 	@Override
-	public Collection<Product> searchProducts(String productName, double minPrice, double maxPrice,
+	@Transactional(readOnly = true)
+	public TotalCount countActiveProducts() {
+		return new TotalCount(this.productCounters.products(Status.ACTIVE).orElseGet(
+				() -> this.productRepository.countByStatus(Status.ACTIVE)), true);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<ProductDTO> searchProducts(String productName, double minPrice, double maxPrice,
 			Date minPostedDate, Date maxPostedDate, int pageNumber, int pageSize) {
+		if (this.productSearchIndex.isReady()) {
+			return searchIndex(productName, minPrice, maxPrice, minPostedDate, maxPostedDate, null,
+					(long) (pageNumber - 1) * pageSize, pageSize);
+		}
 		return this.productRepository.filterSearch(productName, minPrice, maxPrice, minPostedDate,
 				maxPostedDate, Status.ACTIVE,
 				PageRequest.of(pageNumber - 1, pageSize));
 	}
 
 	@Override
+	@Transactional(readOnly = true)
+	public Collection<ProductDTO> searchProducts(String productName, double minPrice, double maxPrice,
+			Date minPostedDate, Date maxPostedDate, ProductCursor cursor, int pageSize) {
+		if (this.productSearchIndex.isReady()) {
+			return searchIndex(productName, minPrice, maxPrice, minPostedDate, maxPostedDate, cursor,
+					0, pageSize);
+		}
+		return this.productRepository.filterSearchBefore(productName, minPrice, maxPrice,
+				minPostedDate, maxPostedDate, Status.ACTIVE, cursor.getCreatedOn(),
+				cursor.getProductId(), PageRequest.of(0, pageSize));
+	}
+
+	/**
+	 * Loads a page of index matches, topping it up from the following matches when rows changed between
+	 * the index lookup and the load, so only the last page comes back short and the scroll goes on
+	 */
+	private List<ProductDTO> searchIndex(String productName, double minPrice, double maxPrice,
+			Date minPostedDate, Date maxPostedDate, ProductCursor cursor, long offset, int pageSize) {
+		List<ProductDTO> page = new ArrayList<>(pageSize);
+		while (page.size() < pageSize) {
+			int wanted = pageSize - page.size();
+			List<UUID> productIds = this.productSearchIndex.search(productName, minPrice, maxPrice,
+					minPostedDate, maxPostedDate, cursor, offset, wanted);
+			page.addAll(findAllInOrder(productIds));
+			if (productIds.size() < wanted) {
+				break;
+			}
+			offset += wanted;
+		}
+		return page;
+	}
+
+	/**
+	 * Loads the products of an index search, keeping the index order and skipping rows that changed meanwhile
+	 */
+	private List<ProductDTO> findAllInOrder(List<UUID> productIds) {
+		if (productIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Map<UUID, ProductDTO> products = this.productRepository.findAllByIdAndStatus(productIds,
+				Status.ACTIVE).stream()
+				.collect(Collectors.toMap(ProductDTO::getProductId, Function.identity()));
+		return productIds.stream().map(products::get).filter(Objects::nonNull)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public TotalCount countSearchResults(String productName, double minPrice, double maxPrice,
+			Date minPostedDate, Date maxPostedDate) {
+		return this.searchCountCache.get(Arrays.asList(productName, minPrice, maxPrice,
+				minPostedDate.getTime(), maxPostedDate.getTime()),
+				limit -> this.productSearchIndex.isReady()
+						? this.productSearchIndex.count(productName, minPrice, maxPrice,
+								minPostedDate, maxPostedDate, limit)
+						: this.productRepository.countSearchUpTo(productName, minPrice, maxPrice,
+								minPostedDate, maxPostedDate, Status.ACTIVE.ordinal(), limit));
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public ProductFacetsDTO fetchFacets(String productName, double[] priceBounds,
+			int[] postedWithinDays) {
+		if (priceBounds.length == 0 || priceBounds.length > MAX_FACET_BOUNDS
+				|| postedWithinDays.length > MAX_FACET_BOUNDS) {
+			throw new CustomException("Please give 1 to " + MAX_FACET_BOUNDS
+					+ " priceBounds and at most " + MAX_FACET_BOUNDS + " postedWithinDays");
+		}
+		for (int i = 1; i < priceBounds.length; i++) {
+			if (priceBounds[i] <= priceBounds[i - 1]) {
+				throw new CustomException("priceBounds must be ascending");
+			}
+		}
+		for (int days : postedWithinDays) {
+			if (days < 1) {
+				throw new CustomException("postedWithinDays must be at least 1");
+			}
+		}
+		long now = System.currentTimeMillis();
+		if (this.productSearchIndex.isReady()) {
+			return this.productSearchIndex.facets(productName, priceBounds, postedWithinDays, now);
+		}
+		// One COUNT per bucket, the index answers the same from memory
+		Date anyDate = new Date(0);
+		List<ProductFacetsDTO.PriceBucket> price = new ArrayList<>(priceBounds.length);
+		for (int i = 0; i < priceBounds.length; i++) {
+			Double to = i + 1 < priceBounds.length ? priceBounds[i + 1] : null;
+			price.add(new ProductFacetsDTO.PriceBucket(priceBounds[i], to,
+					this.productRepository.countSearch(productName, priceBounds[i],
+							to == null ? Double.MAX_VALUE : to, anyDate, Status.ACTIVE)));
+		}
+		List<ProductFacetsDTO.PostedWithin> posted = new ArrayList<>(postedWithinDays.length);
+		for (int days : postedWithinDays) {
+			Date since = new Date(ProductFacetsDTO.postedSince(now, days));
+			posted.add(new ProductFacetsDTO.PostedWithin(days, since,
+					this.productRepository.countSearch(productName, -Double.MAX_VALUE,
+							Double.MAX_VALUE, since, Status.ACTIVE)));
+		}
+		return new ProductFacetsDTO(this.productRepository.countSearch(productName,
+				-Double.MAX_VALUE, Double.MAX_VALUE, anyDate, Status.ACTIVE), price, posted);
+	}
+
+	@Override
+	@Transactional
 	public Product createProduct(ProductUpdateDTO product) {
 		Product p;
-		if (isApprovalRequired(product)) {
+		if (this.approvalPolicy.isApprovalRequired(product.getPrice())) {
 			product.setStatus(Status.PENDING_APPROVAL);
 			p = this.productRepository.save(
 					new Product(product.getName(), product.getPrice(), product.getStatus()));
-			this.approvalQueueRepository.save(new ApprovalQueue(p.getProductId()));
+			this.approvalEnqueuer.enqueue(p.getProductId());
+			this.queued.increment();
 		} else {
 			p = this.productRepository.save(
 					new Product(product.getName(), product.getPrice(), product.getStatus()));
+			this.autoApproved.increment();
 		}
+		publish(ChangeType.CREATED, null, p);
 		return p;
 	}
 
-	private boolean isApprovalRequired(ProductUpdateDTO product){
-		return product.getPrice() > maxAutoApprovedPrice;
+	private void publish(ChangeType type, ProductSnapshot previous, Product current) {
+		this.eventPublisher.publishEvent(
+				new ProductChangedEvent(type, previous, ProductSnapshot.of(current)));
 	}
 
+	/**
+	 * Served from the near cache, each load is a transaction of its own
+	 */
 	@Override
+	public Product fetchProduct(String productId) {
+		UUID id = UUID.fromString(productId);
+		if (this.productCache.isUnknownProduct(id)) {
+			throw new ResourceNotFoundException("Invalid Product Id : " + productId);
+		}
+		return this.productCache.product(id, () -> {
+			Optional<Product> product = this.productRepository.findByProductId(id);
+			return product.isPresent() ? product : this.productArchiver.findArchived(id);
+		}).orElseThrow(() -> new ResourceNotFoundException("Invalid Product Id : " + productId));
+	}
+
+	@Override
+	@Transactional
 	public Product updateProduct(String productId, ProductUpdateDTO productDto) {
-		Optional<Product> product = this.productRepository.findByProductId(
-				UUID.fromString(productId));
+		return updateProduct(productId, productDto, null);
+	}
+
+	@Override
+	@Transactional
+	public Product updateProduct(String productId, ProductUpdateDTO productDto,
+			Long expectedVersion) {
+		Optional<Product> product = findForWrite(UUID.fromString(productId));
 		if (product.isPresent()) {
+			if (expectedVersion != null && product.get().getVersion() != expectedVersion) {
+				throw new PreconditionFailedException("Product " + productId + " is at version "
+						+ product.get().getVersion() + ", not " + expectedVersion);
+			}
+			ProductSnapshot previous = ProductSnapshot.of(product.get());
 			// Checking if the price is more than 50% of its previous price, the product should be pushed to the approval queue.
-			if (product.get().getPrice() + (product.get().getPrice() / 2) <  productDto.getPrice()) {
+			if (this.approvalPolicy.isPriceJump(product.get().getPrice(), productDto.getPrice())) {
 				productDto.setStatus(Status.PENDING_APPROVAL);
-				Optional<ApprovalQueue> apProduct = this.approvalQueueRepository.findByProductId(
-						UUID.fromString(productId));
-				if (!apProduct.isPresent()) {
-					this.approvalQueueRepository.save(
-							new ApprovalQueue(UUID.fromString(productId)));
-				}
+				this.approvalEnqueuer.enqueue(UUID.fromString(productId));
 			}
-			return this.productRepository.save(product.get().updateFromDTO(productDto));
+			Product p = this.productRepository.save(product.get().updateFromDTO(productDto));
+			publish(ChangeType.UPDATED, previous, p);
+			return p;
 		} else {
 			throw new ResourceNotFoundException("Invalid Product Id : " + productId);
 		}
 	}
 
 	@Override
+	@Transactional
 	public String deleteProduct(String productId) {
-		Optional<Product> product = this.productRepository.findByProductId(
-				UUID.fromString(productId));
+		Optional<Product> product = findForWrite(UUID.fromString(productId));
 		if (product.isPresent()) {
-			Optional<ApprovalQueue> apProduct = this.approvalQueueRepository.findByProductId(
-					UUID.fromString(productId));
-			if (!apProduct.isPresent()) {
-				this.approvalQueueRepository.save(new ApprovalQueue(UUID.fromString(productId)));
-			}
+			this.approvalEnqueuer.enqueue(UUID.fromString(productId));
+			ProductSnapshot previous = ProductSnapshot.of(product.get());
 			product.get().setStatus(Status.INACTIVE);
-			this.productRepository.save(product.get());
+			publish(ChangeType.DELETED, previous, this.productRepository.save(product.get()));
 			return "Product Deleted Successfully";
 		} else {
 			throw new ResourceNotFoundException("Invalid Product Id : " + productId);
@@ -105,46 +317,99 @@ public class ProductServiceImpl implements ProductService {
 	}
 
 	@Override
-	public Collection<Product> fetchApprovalQueue(int pageNumber, int pageSize) {
+	@Transactional(readOnly = true)
+	public Collection<ProductDTO> fetchApprovalQueue(int pageNumber, int pageSize) {
 		return this.approvalQueueRepository.findAllApprovalQueue(
 				PageRequest.of(pageNumber - 1, pageSize));
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public TotalCount countApprovalQueue() {
+		return new TotalCount(this.productCounters.approvalQueue().orElseGet(
+				this.approvalQueueRepository::count), true);
+	}
+
 	@Override
 	@Transactional
 	public Product approveProduct(String approvalId) {
-		Optional<ApprovalQueue> apProduct = this.approvalQueueRepository.findByApprovalId(
-				UUID.fromString(approvalId));
-		if (apProduct.isPresent()) {
-			Optional<Product> product = this.productRepository.findByProductId(
-					apProduct.get().getProductId());
-			if (product.isPresent()) {
-				product.get().setStatus(Status.ACTIVE);
-				this.approvalQueueRepository.deleteAllByApprovalId(UUID.fromString(approvalId));
-				return this.productRepository.save(product.get());
-			}
-			throw new ResourceNotFoundException(
-					"Product Not Found : " + apProduct.get().getProductId());
-		}
-		throw new ResourceNotFoundException("Invalid Approval Id : " + approvalId);
+		return approveProduct(approvalId, null);
+	}
+
+	@Override
+	@Transactional
+	public Product approveProduct(String approvalId, String reviewer) {
+		return decide(UUID.fromString(approvalId), reviewer, Status.ACTIVE, ChangeType.APPROVED);
 	}
 
 	@Override
 	@Transactional
 	public Product rejectProduct(String approvalId) {
-		Optional<ApprovalQueue> apProduct = this.approvalQueueRepository.findByApprovalId(
-				UUID.fromString(approvalId));
-		if (apProduct.isPresent()) {
-			Optional<Product> product = this.productRepository.findByProductId(
-					apProduct.get().getProductId());
-			if (product.isPresent()) {
-				product.get().setStatus(Status.REJECTED);
-				this.approvalQueueRepository.deleteAllByApprovalId(UUID.fromString(approvalId));
-				return this.productRepository.save(product.get());
+		return rejectProduct(approvalId, null);
+	}
+
+	@Override
+	@Transactional
+	public Product rejectProduct(String approvalId, String reviewer) {
+		return decide(UUID.fromString(approvalId), reviewer, Status.REJECTED, ChangeType.REJECTED);
+	}
+
+	/**
+	 * The entry is only read to find its Product, the claim is checked by the delete itself
+	 */
+	private Product decide(UUID approvalId, String reviewer, Status status, ChangeType type) {
+		Optional<UUID> productId = this.productCache.isUnknownApproval(approvalId)
+				? Optional.empty()
+				: this.productCache.approvalProduct(approvalId,
+						() -> this.approvalQueueRepository.findByApprovalId(approvalId)
+								.map(ApprovalQueue::getProductId));
+		if (!productId.isPresent()) {
+			throw new ResourceNotFoundException("Invalid Approval Id : " + approvalId);
+		}
+		Optional<Product> product = this.productRepository.findByProductId(productId.get());
+		if (!product.isPresent()) {
+			throw new ResourceNotFoundException("Product Not Found : " + productId.get());
+		}
+		ProductSnapshot previous = ProductSnapshot.of(product.get());
+		product.get().setStatus(status);
+		dequeue(approvalId, reviewer);
+		Product p = this.productRepository.save(product.get());
+		publish(type, previous, p);
+		return p;
+	}
+
+	/**
+	 * Archived products are moved back to product first, so they are written like any other. One
+	 * restored by a concurrent write meanwhile is found by the locking read after the restore
+	 */
+	private Optional<Product> findForWrite(UUID productId) {
+		if (this.productCache.isUnknownProduct(productId)) {
+			return Optional.empty();
+		}
+		Optional<Product> product = this.productRepository.findByProductId(productId);
+		if (product.isPresent()) {
+			return product;
+		}
+		List<UUID> productIds = Collections.singletonList(productId);
+		this.productArchiver.restore(productIds);
+		return this.productRepository.findAllForWrite(productIds).stream().findFirst();
+	}
+
+	/**
+	 * Deleting unless another reviewer holds an unexpired claim, no row deleted means the entry is
+	 * claimed or another reviewer decided it first
+	 */
+	private void dequeue(UUID approvalId, String reviewer) {
+		if (this.approvalQueueRepository.deleteUnlessClaimed(approvalId, reviewer, new Date()) == 0) {
+			this.productCache.evictApproval(approvalId);
+			Optional<ApprovalQueue> approval = this.approvalQueueRepository.findByApprovalId(approvalId);
+			if (approval.isPresent()) {
+				throw new ConflictException("Approval Id " + approvalId
+						+ " is claimed by another reviewer until " + approval.get().getClaimExpiresOn());
 			}
-			throw new ResourceNotFoundException(
-					"Product Not Found : " + apProduct.get().getProductId());
+			throw new ConflictException("Approval Id " + approvalId + " was already decided");
 		}
-		throw new ResourceNotFoundException("Invalid Approval Id : " + approvalId);
+		this.productCache.evictApproval(approvalId);
+		this.eventPublisher.publishEvent(new ApprovalQueueChangedEvent(-1));
 	}
 }
@@ -0,0 +1,143 @@
+package com.tao.test.service;
+
+import com.tao.test.domain.Product;
+import com.tao.test.domain.dto.ProductUpdateDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Merges updates of the same Product arriving within app.update.coalesce.window milliseconds into one
+ * write of the last of them, when app.update.coalesce.enabled. The first caller waits out the window
+ * and writes, the others wait for that write; all of them get the resulting Product or its exception.
+ * The price jump rule compares the last written price with the final one, as a single update would.
+ * Updates with an expected version are never merged, each has to be checked on its own.
+ */
+@Component
+public class ProductUpdateCoalescer {
+
+	private final ProductService productService;
+	private final boolean enabled;
+	private final long windowNanos;
+	private final Counter coalesced;
+
+	private final Map<UUID, Batch> open = new ConcurrentHashMap<>();
+	private final Map<UUID, CompletableFuture<Product>> writing = new ConcurrentHashMap<>();
+
+	@Autowired
+	public ProductUpdateCoalescer(ProductService productService, MeterRegistry meterRegistry,
+			@Value("${app.update.coalesce.enabled:false}") boolean enabled,
+			@Value("${app.update.coalesce.window:5}") long windowMillis) {
+		this.productService = productService;
+		this.enabled = enabled && windowMillis > 0;
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+		this.coalesced = Counter.builder("product.update.coalesced")
+				.description("Product updates merged into the write of a later one")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Same contract as ProductService.updateProduct
+	 */
+	public Product update(String productId, ProductUpdateDTO product, Long expectedVersion) {
+		if (!this.enabled || expectedVersion != null) {
+			return this.productService.updateProduct(productId, product, expectedVersion);
+		}
+		UUID id = UUID.fromString(productId);
+		while (true) {
+			// Registered as the latest write of the id before any newer batch can open
+			Batch batch = this.open.computeIfAbsent(id, key -> {
+				CompletableFuture<Product> written = new CompletableFuture<>();
+				return new Batch(written, this.writing.put(key, written));
+			});
+			CompletableFuture<Product> result = batch.join(product);
+			if (result == null) {
+				// Closed between the lookup and the join, the next batch takes it
+				continue;
+			}
+			if (batch.leader == Thread.currentThread()) {
+				flush(id, productId, batch);
+			}
+			try {
+				return result.join();
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+			}
+		}
+	}
+
+	private void flush(UUID id, String productId, Batch batch) {
+		long deadline = System.nanoTime() + this.windowNanos;
+		for (long wait = this.windowNanos; wait > 0; wait = deadline - System.nanoTime()) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		this.open.remove(id, batch);
+		List<CompletableFuture<Product>> callers = batch.close();
+		// Batches of one Product write in the order they opened, each after the one before
+		if (batch.previous != null) {
+			batch.previous.exceptionally(e -> null).join();
+		}
+		try {
+			Product product = this.productService.updateProduct(productId, batch.last, null);
+			batch.written.complete(product);
+			callers.forEach(caller -> caller.complete(product));
+		} catch (RuntimeException e) {
+			batch.written.completeExceptionally(e);
+			callers.forEach(caller -> caller.completeExceptionally(e));
+		} finally {
+			this.writing.remove(id, batch.written);
+		}
+		this.coalesced.increment(callers.size() - 1);
+	}
+
+	private static final class Batch {
+
+		private final Thread leader = Thread.currentThread();
+		private final CompletableFuture<Product> written;
+		/**
+		 * Write of the batch opened before this one, null when none is pending
+		 */
+		private final CompletableFuture<Product> previous;
+		private final List<CompletableFuture<Product>> callers = new ArrayList<>();
+		private ProductUpdateDTO last;
+		private boolean closed;
+
+		private Batch(CompletableFuture<Product> written, CompletableFuture<Product> previous) {
+			this.written = written;
+			this.previous = previous;
+		}
+
+		/**
+		 * @return the result of the write, null when the batch is already closed
+		 */
+		synchronized CompletableFuture<Product> join(ProductUpdateDTO product) {
+			if (this.closed) {
+				return null;
+			}
+			CompletableFuture<Product> result = new CompletableFuture<>();
+			this.callers.add(result);
+			this.last = product;
+			return result;
+		}
+
+		synchronized List<CompletableFuture<Product>> close() {
+			this.closed = true;
+			return this.callers;
+		}
+	}
+}
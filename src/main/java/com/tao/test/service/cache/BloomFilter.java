@@ -0,0 +1,53 @@
+package com.tao.test.service.cache;
+
+import java.util.UUID;
+
+/**
+ * Set of UUIDs answering "certainly absent" or "maybe present", sized for an expected number of ids
+ * and false positive rate. Filled by one thread before it is published, read-only afterwards.
+ */
+final class BloomFilter {
+
+	private final long[] bits;
+	private final long size;
+	private final int hashes;
+
+	BloomFilter(long expected, double falsePositiveRate) {
+		long n = Math.max(1, expected);
+		long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		m = Math.min(Math.max(64, m), (long) Integer.MAX_VALUE * 64);
+		this.bits = new long[(int) ((m + 63) / 64)];
+		this.size = this.bits.length * 64L;
+		this.hashes = (int) Math.max(1, Math.round((double) this.size / n * Math.log(2)));
+	}
+
+	void add(UUID id) {
+		long h1 = mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+		long h2 = mix(id.getLeastSignificantBits() + 0x9E3779B97F4A7C15L) | 1;
+		for (int i = 0; i < this.hashes; i++) {
+			long bit = Math.floorMod(h1 + i * h2, this.size);
+			this.bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	boolean mightContain(UUID id) {
+		long h1 = mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+		long h2 = mix(id.getLeastSignificantBits() + 0x9E3779B97F4A7C15L) | 1;
+		for (int i = 0; i < this.hashes; i++) {
+			long bit = Math.floorMod(h1 + i * h2, this.size);
+			if ((this.bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finalizer of SplitMix64, spreads the id bits over all 64 bits
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,314 @@
+package com.tao.test.service.cache;
+
+import com.tao.test.domain.Product;
+import com.tao.test.repository.ApprovalQueueRepository;
+import com.tao.test.repository.ProductArchiveRepository;
+import com.tao.test.repository.ProductRepository;
+import com.tao.test.service.event.ProductChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Near cache of Products and of the Product of each approval queue entry by id, at most
+ * app.cache.size entries each, least recently used evicted first, entries expiring after
+ * app.cache.ttl milliseconds so changes made by other instances show up. Products are evicted on
+ * every ProductChangedEvent, approval entries when they leave the queue.
+ *
+ * Bloom filters of all product and approval ids, rebuilt every app.cache.negative.rebuild-interval
+ * from the primary, reject unknown ids without a query. Time ordered ids created after the
+ * rebuild started, less app.cache.negative.margin milliseconds for transactions still open then,
+ * are not covered and always go to the database, so ids created meanwhile are never rejected.
+ */
+@Component
+@Slf4j
+public class ProductCache {
+
+	private static final int ID_PAGE_SIZE = 10000;
+	private static final UUID FIRST_ID = new UUID(0, 0);
+
+	private final ProductRepository productRepository;
+	private final ProductArchiveRepository productArchiveRepository;
+	private final ApprovalQueueRepository approvalQueueRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final boolean enabled;
+	private final long ttl;
+	private final boolean negativeEnabled;
+	private final long margin;
+	private final double falsePositiveRate;
+	private final Map<UUID, Entry<Product>> products;
+	private final Map<UUID, Entry<UUID>> approvals;
+	// Bumped by every eviction, a load that overlapped one is not cached
+	private final AtomicLong evictions = new AtomicLong();
+	private final Counter productHits;
+	private final Counter productMisses;
+	private final Counter approvalHits;
+	private final Counter approvalMisses;
+	private final Counter productRejected;
+	private final Counter productPassed;
+	private final Counter approvalRejected;
+	private final Counter approvalPassed;
+	private volatile IdFilter productFilter;
+	private volatile IdFilter approvalFilter;
+
+	@Autowired
+	public ProductCache(ProductRepository productRepository,
+			ProductArchiveRepository productArchiveRepository,
+			ApprovalQueueRepository approvalQueueRepository,
+			TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+			@Value("${app.cache.enabled:true}") boolean enabled,
+			@Value("${app.cache.size:10000}") int size,
+			@Value("${app.cache.ttl:10000}") long ttl,
+			@Value("${app.cache.negative.enabled:true}") boolean negativeEnabled,
+			@Value("${app.cache.negative.margin:60000}") long margin,
+			@Value("${app.cache.negative.false-positive-rate:0.01}") double falsePositiveRate) {
+		this.productRepository = productRepository;
+		this.productArchiveRepository = productArchiveRepository;
+		this.approvalQueueRepository = approvalQueueRepository;
+		this.transactionTemplate = transactionTemplate;
+		this.enabled = enabled && size > 0;
+		this.ttl = ttl;
+		this.negativeEnabled = negativeEnabled;
+		this.margin = margin;
+		this.falsePositiveRate = falsePositiveRate;
+		this.products = lru(size);
+		this.approvals = lru(size);
+		this.productHits = requests(meterRegistry, "product", "hit");
+		this.productMisses = requests(meterRegistry, "product", "miss");
+		this.approvalHits = requests(meterRegistry, "approval", "hit");
+		this.approvalMisses = requests(meterRegistry, "approval", "miss");
+		this.productRejected = negative(meterRegistry, "product", "rejected");
+		this.productPassed = negative(meterRegistry, "product", "passed");
+		this.approvalRejected = negative(meterRegistry, "approval", "rejected");
+		this.approvalPassed = negative(meterRegistry, "approval", "passed");
+		Gauge.builder("product.cache.size", this.products, this::size).tag("cache", "product")
+				.description("Entries in the near cache").register(meterRegistry);
+		Gauge.builder("product.cache.size", this.approvals, this::size).tag("cache", "approval")
+				.description("Entries in the near cache").register(meterRegistry);
+	}
+
+	/**
+	 * @return true when no product has the id, false when it may exist or the filter cannot tell
+	 */
+	public boolean isUnknownProduct(UUID productId) {
+		return isUnknown(this.productFilter, productId, this.productRejected, this.productPassed);
+	}
+
+	/**
+	 * @return true when no approval queue entry has the id, false when it may exist or the filter cannot tell
+	 */
+	public boolean isUnknownApproval(UUID approvalId) {
+		return isUnknown(this.approvalFilter, approvalId, this.approvalRejected,
+				this.approvalPassed);
+	}
+
+	/**
+	 * @param loader reads the Product from the database, the result is cached when present
+	 * @return a detached copy, safe to change
+	 */
+	public Optional<Product> product(UUID productId, Supplier<Optional<Product>> loader) {
+		return get(this.products, productId, loader, this.productHits, this.productMisses)
+				.map(ProductCache::copy);
+	}
+
+	/**
+	 * @param loader reads the productId of the approval queue entry, the result is cached when present
+	 */
+	public Optional<UUID> approvalProduct(UUID approvalId, Supplier<Optional<UUID>> loader) {
+		return get(this.approvals, approvalId, loader, this.approvalHits, this.approvalMisses);
+	}
+
+	public void evictApproval(UUID approvalId) {
+		evict(this.approvals, approvalId);
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductChanged(ProductChangedEvent event) {
+		evict(this.products, event.getCurrent().getProductId());
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void bootstrap() {
+		rebuildFilters();
+	}
+
+	@Scheduled(fixedDelayString = "${app.cache.negative.rebuild-interval:600000}",
+			initialDelayString = "${app.cache.negative.rebuild-interval:600000}")
+	public void rebuildFilters() {
+		if (!this.negativeEnabled) {
+			return;
+		}
+		try {
+			long start = System.currentTimeMillis();
+			// On the primary, a lagging replica could miss ids the filter then claims are unknown
+			IdFilter products = this.transactionTemplate.execute(status -> {
+				IdFilter filter = new IdFilter(start - this.margin, this.productRepository.count()
+						+ this.productArchiveRepository.count(), this.falsePositiveRate);
+				fill(filter, this.productRepository::findIdsAfter);
+				fill(filter, this.productArchiveRepository::findIdsAfter);
+				return filter;
+			});
+			IdFilter approvals = this.transactionTemplate.execute(status -> {
+				IdFilter filter = new IdFilter(start - this.margin,
+						this.approvalQueueRepository.count(), this.falsePositiveRate);
+				fill(filter, this.approvalQueueRepository::findIdsAfter);
+				return filter;
+			});
+			this.productFilter = products;
+			this.approvalFilter = approvals;
+			log.info("Rebuilt the id filters of {} products and {} approvals in {} ms",
+					products.ids, approvals.ids, System.currentTimeMillis() - start);
+		} catch (RuntimeException e) {
+			log.error("Id filters could not be rebuilt, keeping the previous ones", e);
+		}
+	}
+
+	private static void fill(IdFilter filter,
+			BiFunction<UUID, PageRequest, List<UUID>> idsAfter) {
+		UUID after = FIRST_ID;
+		List<UUID> page;
+		do {
+			page = idsAfter.apply(after, PageRequest.of(0, ID_PAGE_SIZE));
+			for (UUID id : page) {
+				filter.bloom.add(id);
+			}
+			filter.ids += page.size();
+			if (!page.isEmpty()) {
+				after = page.get(page.size() - 1);
+			}
+		} while (page.size() == ID_PAGE_SIZE);
+	}
+
+	private static boolean isUnknown(IdFilter filter, UUID id, Counter rejected, Counter passed) {
+		if (filter == null) {
+			return false;
+		}
+		// Time ordered ids carry their creation millis in the top 48 bits
+		if (id.version() == 7 && (id.getMostSignificantBits() >>> 16) >= filter.coversBefore) {
+			passed.increment();
+			return false;
+		}
+		if (filter.bloom.mightContain(id)) {
+			passed.increment();
+			return false;
+		}
+		rejected.increment();
+		return true;
+	}
+
+	private <T> Optional<T> get(Map<UUID, Entry<T>> cache, UUID id, Supplier<Optional<T>> loader,
+			Counter hits, Counter misses) {
+		if (!this.enabled) {
+			return loader.get();
+		}
+		long now = System.currentTimeMillis();
+		synchronized (cache) {
+			Entry<T> entry = cache.get(id);
+			if (entry != null && entry.expiresOn > now) {
+				hits.increment();
+				return Optional.of(entry.value);
+			}
+		}
+		misses.increment();
+		long evictions = this.evictions.get();
+		Optional<T> value = loader.get();
+		if (value.isPresent()) {
+			synchronized (cache) {
+				if (this.evictions.get() == evictions) {
+					cache.put(id, new Entry<>(value.get(), now + this.ttl));
+				}
+			}
+		}
+		return value;
+	}
+
+	private <T> void evict(Map<UUID, Entry<T>> cache, UUID id) {
+		synchronized (cache) {
+			this.evictions.incrementAndGet();
+			cache.remove(id);
+		}
+	}
+
+	private double size(Map<UUID, ?> cache) {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	private static Product copy(Product product) {
+		Product copy = new Product();
+		copy.setProductId(product.getProductId());
+		copy.setName(product.getName());
+		copy.setPrice(product.getPrice());
+		copy.setStatus(product.getStatus());
+		copy.setCreatedOn(product.getCreatedOn());
+		copy.setUpdatedOn(product.getUpdatedOn());
+		copy.setVersion(product.getVersion());
+		return copy;
+	}
+
+	private static <T> Map<UUID, Entry<T>> lru(int size) {
+		return new LinkedHashMap<UUID, Entry<T>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<UUID, Entry<T>> eldest) {
+				return size() > size;
+			}
+		};
+	}
+
+	private static Counter requests(MeterRegistry meterRegistry, String cache, String result) {
+		return Counter.builder("product.cache.requests").tag("cache", cache).tag("result", result)
+				.description("Near cache lookups by outcome").register(meterRegistry);
+	}
+
+	private static Counter negative(MeterRegistry meterRegistry, String cache, String result) {
+		return Counter.builder("product.cache.negative").tag("cache", cache).tag("result", result)
+				.description("Id filter checks, rejected ids never reach the database")
+				.register(meterRegistry);
+	}
+
+	private static final class Entry<T> {
+
+		private final T value;
+		private final long expiresOn;
+
+		private Entry(T value, long expiresOn) {
+			this.value = value;
+			this.expiresOn = expiresOn;
+		}
+	}
+
+	private static final class IdFilter {
+
+		private final long coversBefore;
+		private final BloomFilter bloom;
+		private long ids;
+
+		private IdFilter(long coversBefore, long expected, double falsePositiveRate) {
+			this.coversBefore = coversBefore;
+			// Room for the ids added while it is filled
+			this.bloom = new BloomFilter(Math.max(1000, expected + expected / 5), falsePositiveRate);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.tao.test.service.counts;
+
+import com.tao.test.domain.enums.ChangeType;
+import com.tao.test.domain.enums.Status;
+import com.tao.test.repository.ApprovalQueueRepository;
+import com.tao.test.repository.ProductRepository;
+import com.tao.test.service.event.ApprovalQueueChangedEvent;
+import com.tao.test.service.event.ProductChangedEvent;
+import com.tao.test.service.event.ProductSnapshot;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Products per Status and approval queue entries, kept current from the change events.
+ * Recounted from the database every app.counts.resync-interval, which also corrects the drift from
+ * changes committed during a recount or by other instances.
+ */
+@Component
+@Slf4j
+public class ProductCounters {
+
+	private final ProductRepository productRepository;
+	private final ApprovalQueueRepository approvalQueueRepository;
+
+	private final AtomicLongArray products = new AtomicLongArray(Status.values().length);
+	private final AtomicLong approvalQueue = new AtomicLong();
+	private volatile boolean ready;
+
+	@Autowired
+	public ProductCounters(ProductRepository productRepository,
+			ApprovalQueueRepository approvalQueueRepository) {
+		this.productRepository = productRepository;
+		this.approvalQueueRepository = approvalQueueRepository;
+	}
+
+	/**
+	 * @return the products with the status, empty until the first recount
+	 */
+	public OptionalLong products(Status status) {
+		return this.ready ? OptionalLong.of(this.products.get(status.ordinal()))
+				: OptionalLong.empty();
+	}
+
+	/**
+	 * @return the approval queue entries, empty until the first recount
+	 */
+	public OptionalLong approvalQueue() {
+		return this.ready ? OptionalLong.of(this.approvalQueue.get()) : OptionalLong.empty();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void bootstrap() {
+		resync();
+	}
+
+	@Scheduled(fixedDelayString = "${app.counts.resync-interval:60000}",
+			initialDelayString = "${app.counts.resync-interval:60000}")
+	public void resync() {
+		try {
+			long[] counts = new long[Status.values().length];
+			List<Object[]> rows = this.productRepository.countGroupByStatus();
+			for (Object[] row : rows) {
+				counts[((Status) row[0]).ordinal()] = ((Number) row[1]).longValue();
+			}
+			long queued = this.approvalQueueRepository.count();
+			for (int i = 0; i < counts.length; i++) {
+				this.products.set(i, counts[i]);
+			}
+			this.approvalQueue.set(queued);
+			this.ready = true;
+		} catch (RuntimeException e) {
+			log.error("Product counters could not be recounted, keeping the maintained values", e);
+		}
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductChanged(ProductChangedEvent event) {
+		ProductSnapshot previous = event.getPrevious();
+		if (previous != null) {
+			this.products.decrementAndGet(previous.getStatus().ordinal());
+		}
+		if (event.getType() == ChangeType.ARCHIVED) {
+			return;
+		}
+		this.products.incrementAndGet(event.getCurrent().getStatus().ordinal());
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onApprovalQueueChanged(ApprovalQueueChangedEvent event) {
+		this.approvalQueue.addAndGet(event.getDelta());
+	}
+}
@@ -0,0 +1,76 @@
+package com.tao.test.service.counts;
+
+import com.tao.test.domain.dto.TotalCount;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongUnaryOperator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Totals of filtered searches, so scrolling through the pages of one search counts once.
+ * app.count.search.cap stops counting early and reports the cap as an inexact total, 0 always counts
+ * everything. Totals are reused for app.count.search.ttl milliseconds, 0 counts on every request.
+ */
+@Component
+public class SearchCountCache {
+
+	private final long cap;
+	private final long ttl;
+	private final Map<Object, Entry> entries;
+
+	@Autowired
+	public SearchCountCache(@Value("${app.count.search.cap:10000}") long cap,
+			@Value("${app.count.search.ttl:30000}") long ttl,
+			@Value("${app.count.search.cache-size:1000}") int cacheSize) {
+		this.cap = cap;
+		this.ttl = ttl;
+		this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * @param key     equal for equal filters
+	 * @param counter counts the matches, stopping at the limit it is given
+	 */
+	public TotalCount get(Object key, LongUnaryOperator counter) {
+		long now = System.currentTimeMillis();
+		if (this.ttl > 0) {
+			synchronized (this.entries) {
+				Entry entry = this.entries.get(key);
+				if (entry != null && entry.expiresOn > now) {
+					return entry.total;
+				}
+			}
+		}
+		long limit = this.cap > 0 ? this.cap + 1 : Long.MAX_VALUE;
+		long count = counter.applyAsLong(limit);
+		TotalCount total = count > this.cap && this.cap > 0 ? new TotalCount(this.cap, false)
+				: new TotalCount(count, true);
+		if (this.ttl > 0) {
+			synchronized (this.entries) {
+				this.entries.put(key, new Entry(total, now + this.ttl));
+			}
+		}
+		return total;
+	}
+
+	private static final class Entry {
+
+		private final TotalCount total;
+		private final long expiresOn;
+
+		private Entry(TotalCount total, long expiresOn) {
+			this.total = total;
+			this.expiresOn = expiresOn;
+		}
+	}
+}
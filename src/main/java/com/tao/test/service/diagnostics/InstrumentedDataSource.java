@@ -0,0 +1,192 @@
+package com.tao.test.service.diagnostics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Times every statement executed on connections of the target DataSource and reports it to
+ * QueryStatistics, with its bound parameters when app.diagnostics.log-parameters, then counts the rows read from its result set or
+ * the rows it updated. Everything else is passed straight through.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+	private final QueryStatistics queryStatistics;
+
+	public InstrumentedDataSource(DataSource target, QueryStatistics queryStatistics) {
+		super(target);
+		this.queryStatistics = queryStatistics;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return wrap(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return wrap(super.getConnection(username, password));
+	}
+
+	private Connection wrap(Connection connection) {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+					if (isIdentityMethod(method)) {
+						return identity(proxy, method, args);
+					}
+					Object result = invoke(connection, method, args);
+					if (result instanceof Statement && (method.getName().startsWith("prepare")
+							|| method.getName().equals("createStatement"))) {
+						String sql = args != null && args.length > 0 && args[0] instanceof String
+								? (String) args[0] : null;
+						return Proxy.newProxyInstance(getClass().getClassLoader(),
+								new Class<?>[] {method.getReturnType()},
+								new StatementHandler((Statement) result, sql));
+					}
+					return result;
+				});
+	}
+
+	/**
+	 * Proxies are compared by identity, the target would not recognize its proxy as equal
+	 */
+	private static boolean isIdentityMethod(Method method) {
+		return method.getName().equals("equals") && method.getParameterCount() == 1
+				|| method.getName().equals("hashCode") && method.getParameterCount() == 0;
+	}
+
+	private static Object identity(Object proxy, Method method, Object[] args) {
+		return method.getName().equals("equals") ? proxy == args[0]
+				: System.identityHashCode(proxy);
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private final class StatementHandler implements InvocationHandler {
+
+		private final Statement statement;
+		private final String sql;
+		private Object[] parameters;
+		private QueryStatistics.Shape pending;
+
+		private StatementHandler(Statement statement, String sql) {
+			this.statement = statement;
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (isIdentityMethod(method)) {
+				return identity(proxy, method, args);
+			}
+			if (name.startsWith("execute")) {
+				return execute(method, args);
+			}
+			if (name.startsWith("set") && args != null && args.length >= 2
+					&& args[0] instanceof Integer
+					&& method.getDeclaringClass() != Statement.class
+					&& InstrumentedDataSource.this.queryStatistics.isLogParameters()) {
+				bind((Integer) args[0], name.equals("setNull") ? "NULL" : args[1]);
+			} else if (name.equals("clearParameters")) {
+				this.parameters = null;
+			} else if (name.equals("getResultSet") && this.pending != null) {
+				ResultSet resultSet = (ResultSet) InstrumentedDataSource.invoke(this.statement,
+						method, args);
+				QueryStatistics.Shape shape = this.pending;
+				this.pending = null;
+				return resultSet == null ? null : countRows(resultSet, shape);
+			}
+			return InstrumentedDataSource.invoke(this.statement, method, args);
+		}
+
+		private Object execute(Method method, Object[] args) throws Throwable {
+			String sql = args != null && args.length > 0 && args[0] instanceof String
+					? (String) args[0] : this.sql;
+			long start = System.nanoTime();
+			Object result;
+			try {
+				result = InstrumentedDataSource.invoke(this.statement, method, args);
+			} finally {
+				this.pending = InstrumentedDataSource.this.queryStatistics.recordStatement(
+						sql == null ? "UNKNOWN" : sql, System.nanoTime() - start, this.parameters);
+			}
+			if (result instanceof ResultSet) {
+				QueryStatistics.Shape shape = this.pending;
+				this.pending = null;
+				return countRows((ResultSet) result, shape);
+			}
+			if (result instanceof Integer || result instanceof Long) {
+				this.pending.addRows(((Number) result).longValue());
+				this.pending = null;
+			} else if (result instanceof int[]) {
+				this.pending.addRows(Arrays.stream((int[]) result).filter(n -> n > 0).sum());
+				this.pending = null;
+			} else if (result instanceof long[]) {
+				this.pending.addRows(Arrays.stream((long[]) result).filter(n -> n > 0).sum());
+				this.pending = null;
+			}
+			// execute() returning true leaves pending for getResultSet
+			return result;
+		}
+
+		private void bind(int index, Object value) {
+			if (this.parameters == null) {
+				this.parameters = new Object[Math.max(index + 1, 8)];
+			} else if (index >= this.parameters.length) {
+				this.parameters = Arrays.copyOf(this.parameters, Math.max(index + 1,
+						this.parameters.length * 2));
+			}
+			this.parameters[index] = value;
+		}
+
+		private ResultSet countRows(ResultSet resultSet, QueryStatistics.Shape shape) {
+			return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] {ResultSet.class}, new InvocationHandler() {
+
+						private long rows;
+						private boolean done;
+
+						@Override
+						public Object invoke(Object proxy, Method method, Object[] args)
+								throws Throwable {
+							if (isIdentityMethod(method)) {
+								return identity(proxy, method, args);
+							}
+							Object result = InstrumentedDataSource.invoke(resultSet, method, args);
+							if (method.getName().equals("next")) {
+								if (Boolean.TRUE.equals(result)) {
+									this.rows++;
+								} else {
+									finish();
+								}
+							} else if (method.getName().equals("close")) {
+								finish();
+							}
+							return result;
+						}
+
+						private void finish() {
+							if (!this.done) {
+								this.done = true;
+								shape.addRows(this.rows);
+							}
+						}
+					});
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.tao.test.service.diagnostics;
+
+import com.tao.test.domain.dto.QueryDiagnosticsDTO;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * /actuator/queries: the top slowest and most frequent statement shapes, statements per endpoint and
+ * the Hibernate statistics since startup. top defaults to app.diagnostics.top. Read only and not
+ * exposed over the web by default, add it to management.endpoints.web.exposure.include on a
+ * secured management port to use it. The Hibernate part only reports enabled false unless
+ * spring.jpa.properties.hibernate.generate_statistics is switched on, which costs a little on every
+ * session.
+ */
+@Component
+@Endpoint(id = "queries")
+public class QueryDiagnosticsEndpoint {
+
+	private final QueryStatistics queryStatistics;
+	private final EntityManagerFactory entityManagerFactory;
+	private final int defaultTop;
+
+	@Autowired
+	public QueryDiagnosticsEndpoint(QueryStatistics queryStatistics,
+			EntityManagerFactory entityManagerFactory,
+			@Value("${app.diagnostics.top:20}") int defaultTop) {
+		this.queryStatistics = queryStatistics;
+		this.entityManagerFactory = entityManagerFactory;
+		this.defaultTop = defaultTop;
+	}
+
+	@ReadOperation
+	public QueryDiagnosticsDTO queries(@Nullable Integer top) {
+		return this.queryStatistics.snapshot(top == null || top < 1 ? this.defaultTop : top,
+				hibernate());
+	}
+
+	private Map<String, Object> hibernate() {
+		Statistics statistics = statistics();
+		Map<String, Object> values = new LinkedHashMap<>();
+		values.put("enabled", statistics.isStatisticsEnabled());
+		if (!statistics.isStatisticsEnabled()) {
+			return values;
+		}
+		values.put("sessionsOpened", statistics.getSessionOpenCount());
+		values.put("transactions", statistics.getTransactionCount());
+		values.put("flushes", statistics.getFlushCount());
+		values.put("statementsPrepared", statistics.getPrepareStatementCount());
+		values.put("queries", statistics.getQueryExecutionCount());
+		values.put("queryMaxMillis", statistics.getQueryExecutionMaxTime());
+		values.put("slowestQuery", statistics.getQueryExecutionMaxTimeQueryString());
+		values.put("entitiesLoaded", statistics.getEntityLoadCount());
+		values.put("entitiesFetched", statistics.getEntityFetchCount());
+		values.put("entitiesInserted", statistics.getEntityInsertCount());
+		values.put("entitiesUpdated", statistics.getEntityUpdateCount());
+		values.put("entitiesDeleted", statistics.getEntityDeleteCount());
+		values.put("collectionsFetched", statistics.getCollectionFetchCount());
+		values.put("optimisticFailures", statistics.getOptimisticFailureCount());
+		return values;
+	}
+
+	private Statistics statistics() {
+		return this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+}
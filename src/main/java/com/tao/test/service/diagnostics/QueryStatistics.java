@@ -0,0 +1,198 @@
+package com.tao.test.service.diagnostics;
+
+import com.tao.test.domain.dto.QueryDiagnosticsDTO;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aggregates the statements seen by InstrumentedDataSource by query shape and by endpoint, and logs
+ * statements slower than app.diagnostics.slow-query milliseconds. Their bound parameters, each cut
+ * to 100 characters, are only captured and logged with app.diagnostics.log-parameters, as they may
+ * hold personal data.
+ * Recording is a map lookup and a few adders per statement. At most app.diagnostics.max-shapes shapes
+ * are tracked, later ones are counted under OTHER.
+ */
+@Component
+@Slf4j
+public class QueryStatistics {
+
+	private static final String OTHER = "OTHER";
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+	private static final int MAX_PARAMETER_LENGTH = 100;
+
+	private final long slowNanos;
+	private final int maxShapes;
+	private final boolean logParameters;
+	// By raw SQL, so a repeated statement is not normalized again
+	private final Map<String, Shape> bySql = new ConcurrentHashMap<>();
+	private final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+	private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+	private final LongAdder statements = new LongAdder();
+	private final LongAdder slowStatements = new LongAdder();
+	private final Date since = new Date();
+
+	@Autowired
+	public QueryStatistics(@Value("${app.diagnostics.slow-query:200}") long slowMillis,
+			@Value("${app.diagnostics.max-shapes:500}") int maxShapes,
+			@Value("${app.diagnostics.log-parameters:false}") boolean logParameters) {
+		this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+		this.maxShapes = maxShapes;
+		this.logParameters = logParameters;
+	}
+
+	boolean isLogParameters() {
+		return this.logParameters;
+	}
+
+	/**
+	 * @param parameters bound parameters by index, null unless app.diagnostics.log-parameters
+	 * @return the shape to add the rows of the statement to once they are read
+	 */
+	Shape recordStatement(String sql, long nanos, Object[] parameters) {
+		Shape shape = shape(sql);
+		shape.count.increment();
+		shape.nanos.add(nanos);
+		shape.maxNanos.accumulateAndGet(nanos, Math::max);
+		this.statements.increment();
+		RequestStatements.record(nanos);
+		if (nanos >= this.slowNanos) {
+			this.slowStatements.increment();
+			if (this.logParameters) {
+				log.warn("Slow statement {} ms: {} parameters {}",
+						TimeUnit.NANOSECONDS.toMillis(nanos), sql, format(parameters));
+			} else {
+				log.warn("Slow statement {} ms: {}", TimeUnit.NANOSECONDS.toMillis(nanos), sql);
+			}
+		}
+		return shape;
+	}
+
+	void recordRequest(String endpoint, long statements, long nanos) {
+		Endpoint entry = this.endpoints.computeIfAbsent(endpoint, key -> new Endpoint());
+		entry.requests.increment();
+		entry.statements.add(statements);
+		entry.nanos.add(nanos);
+		entry.maxStatements.accumulateAndGet(statements, Math::max);
+	}
+
+	private Shape shape(String sql) {
+		Shape shape = this.bySql.get(sql);
+		if (shape != null) {
+			return shape;
+		}
+		String normalized = PLACEHOLDER_LIST.matcher(WHITESPACE.matcher(sql.trim()).replaceAll(" "))
+				.replaceAll("(?...)");
+		shape = this.shapes.get(normalized);
+		if (shape == null) {
+			String key = this.shapes.size() < this.maxShapes ? normalized : OTHER;
+			shape = this.shapes.computeIfAbsent(key, Shape::new);
+		}
+		// IN lists of every length map to one shape, so the raw cache is bounded separately
+		if (this.bySql.size() < this.maxShapes * 4) {
+			this.bySql.put(sql, shape);
+		}
+		return shape;
+	}
+
+	public QueryDiagnosticsDTO snapshot(int top, Map<String, Object> hibernate) {
+		List<Shape> all = Arrays.asList(this.shapes.values().toArray(new Shape[0]));
+		return new QueryDiagnosticsDTO(this.since, this.statements.sum(), this.slowStatements.sum(),
+				top(all, shape -> shape.maxNanos.get(), top),
+				top(all, shape -> shape.count.sum(), top),
+				this.endpoints.entrySet().stream()
+						.map(e -> e.getValue().toDTO(e.getKey()))
+						.sorted(Comparator.comparingDouble(QueryDiagnosticsDTO.Endpoint::getAvgStatements)
+								.reversed())
+						.limit(top).collect(Collectors.toList()),
+				hibernate);
+	}
+
+	private static List<QueryDiagnosticsDTO.Shape> top(List<Shape> shapes,
+			ToDoubleFunction<Shape> key, int top) {
+		return shapes.stream().sorted(Comparator.comparingDouble(key).reversed()).limit(top)
+				.map(Shape::toDTO).collect(Collectors.toList());
+	}
+
+	private static String format(Object[] parameters) {
+		if (parameters == null) {
+			return "[]";
+		}
+		// Unused trailing slots of the array are null, bound nulls are "NULL"
+		int last = parameters.length - 1;
+		while (last > 0 && parameters[last] == null) {
+			last--;
+		}
+		StringBuilder out = new StringBuilder("[");
+		for (int i = 1; i <= last; i++) {
+			if (i > 1) {
+				out.append(", ");
+			}
+			Object value = parameters[i];
+			String text = value instanceof byte[] ? "byte[" + ((byte[]) value).length + "]"
+					: String.valueOf(value);
+			out.append(text.length() > MAX_PARAMETER_LENGTH
+					? text.substring(0, MAX_PARAMETER_LENGTH) + "..." : text);
+		}
+		return out.append(']').toString();
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+
+	static final class Shape {
+
+		private final String sql;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final LongAdder rows = new LongAdder();
+
+		private Shape(String sql) {
+			this.sql = sql;
+		}
+
+		void addRows(long rows) {
+			this.rows.add(rows);
+		}
+
+		private QueryDiagnosticsDTO.Shape toDTO() {
+			long count = this.count.sum();
+			long nanos = this.nanos.sum();
+			return new QueryDiagnosticsDTO.Shape(this.sql, count, millis(nanos),
+					count == 0 ? 0 : millis(nanos / count), millis(this.maxNanos.get()),
+					this.rows.sum());
+		}
+	}
+
+	private static final class Endpoint {
+
+		private final LongAdder requests = new LongAdder();
+		private final LongAdder statements = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+		private final AtomicLong maxStatements = new AtomicLong();
+
+		private QueryDiagnosticsDTO.Endpoint toDTO(String endpoint) {
+			long requests = this.requests.sum();
+			long statements = this.statements.sum();
+			return new QueryDiagnosticsDTO.Endpoint(endpoint, requests,
+					requests == 0 ? 0 : (double) statements / requests, this.maxStatements.get(),
+					statements == 0 ? 0 : millis(this.nanos.sum() / statements));
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.tao.test.service.diagnostics;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Counts the statements of each HTTP request, including those run by EndpointExecutors on behalf of
+ * the request, and hands the totals to QueryStatistics by endpoint pattern once the request completes.
+ */
+public class RequestStatements extends OncePerRequestFilter {
+
+	private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+	private final QueryStatistics queryStatistics;
+
+	public RequestStatements(QueryStatistics queryStatistics) {
+		this.queryStatistics = queryStatistics;
+	}
+
+	/**
+	 * Called for every statement of the current thread
+	 */
+	static void record(long nanos) {
+		Counts counts = CURRENT.get();
+		if (counts != null) {
+			counts.statements.incrementAndGet();
+			counts.nanos.add(nanos);
+		}
+	}
+
+	/**
+	 * @return work counting its statements for the request of the calling thread, for work handed to another thread
+	 */
+	public static <T> Supplier<T> propagate(Supplier<T> work) {
+		Counts counts = CURRENT.get();
+		if (counts == null) {
+			return work;
+		}
+		return () -> {
+			CURRENT.set(counts);
+			try {
+				return work.get();
+			} finally {
+				CURRENT.remove();
+			}
+		};
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+			FilterChain filterChain) throws ServletException, IOException {
+		Counts counts = new Counts();
+		CURRENT.set(counts);
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			CURRENT.remove();
+			if (isAsyncStarted(request)) {
+				request.getAsyncContext().addListener(new AsyncListener() {
+
+					@Override
+					public void onComplete(AsyncEvent event) {
+						complete(request, counts);
+					}
+
+					@Override
+					public void onTimeout(AsyncEvent event) {
+					}
+
+					@Override
+					public void onError(AsyncEvent event) {
+					}
+
+					@Override
+					public void onStartAsync(AsyncEvent event) {
+					}
+				});
+			} else {
+				complete(request, counts);
+			}
+		}
+	}
+
+	private void complete(HttpServletRequest request, Counts counts) {
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		// Unmatched paths share one entry, so they cannot grow the endpoint table
+		String endpoint = request.getMethod() + " " + (pattern == null ? "UNMATCHED" : pattern);
+		this.queryStatistics.recordRequest(endpoint, counts.statements.get(), counts.nanos.sum());
+	}
+
+	private static final class Counts {
+
+		private final AtomicLong statements = new AtomicLong();
+		private final LongAdder nanos = new LongAdder();
+	}
+}
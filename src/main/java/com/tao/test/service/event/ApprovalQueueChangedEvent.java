@@ -0,0 +1,13 @@
+package com.tao.test.service.event;
+
+import lombok.Value;
+
+/**
+ * Published when approval_queue entries are inserted or deleted, delta is negative for deletions.
+ * Listeners should use @TransactionalEventListener(fallbackExecution = true) so they only see committed changes.
+ */
+@Value
+public class ApprovalQueueChangedEvent {
+
+	int delta;
+}
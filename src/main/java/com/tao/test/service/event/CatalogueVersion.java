@@ -0,0 +1,48 @@
+package com.tao.test.service.event;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Changes with every committed Product or approval queue change seen by this instance, for the ETags
+ * of the listings. The random epoch keeps the ETags of another instance or of an earlier run from
+ * ever matching, which costs those clients one full response instead of serving them stale pages.
+ *
+ * Writes handled by another instance do not change it, so a client going back to the same instance
+ * would get 304 on stale pages. Only for single instance deployments, app.etag.listings.enabled
+ * turns it on.
+ */
+@Component
+public class CatalogueVersion {
+
+	private final boolean enabled;
+	private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+	private final AtomicLong version = new AtomicLong();
+
+	@Autowired
+	public CatalogueVersion(@Value("${app.etag.listings.enabled:false}") boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return strong ETag of the current version, read it before loading the response it tags. null
+	 * when disabled
+	 */
+	public String eTag() {
+		return this.enabled ? "\"" + this.epoch + "-" + this.version.get() + "\"" : null;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductChanged(ProductChangedEvent event) {
+		this.version.incrementAndGet();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onApprovalQueueChanged(ApprovalQueueChangedEvent event) {
+		this.version.incrementAndGet();
+	}
+}
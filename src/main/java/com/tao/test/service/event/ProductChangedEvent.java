@@ -0,0 +1,22 @@
+package com.tao.test.service.event;
+
+import com.tao.test.domain.enums.ChangeType;
+import lombok.Value;
+
+/**
+ * Published by the service on every Product mutation.
+ * Listeners should use @TransactionalEventListener(fallbackExecution = true) so they only see committed changes.
+ */
+@Value
+public class ProductChangedEvent {
+
+	ChangeType type;
+	/**
+	 * State before the change, null for a newly created or restored Product
+	 */
+	ProductSnapshot previous;
+	/**
+	 * State after the change, the archived state for ARCHIVED
+	 */
+	ProductSnapshot current;
+}
@@ -0,0 +1,75 @@
+package com.tao.test.service.event;
+
+import com.tao.test.domain.Product;
+import com.tao.test.domain.dto.ProductDTO;
+import com.tao.test.domain.enums.Status;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.UUID;
+import lombok.Value;
+
+/**
+ * Immutable copy of a Product taken when it is changed, safe to hand to other threads
+ */
+@Value
+public class ProductSnapshot {
+
+	/**
+	 * Listing order: createdOn descending, then productId descending in database byte order
+	 */
+	public static final Comparator<ProductSnapshot> NEWEST_FIRST = (a, b) -> {
+		int byDate = Long.compare(b.createdOn, a.createdOn);
+		return byDate != 0 ? byDate : compareIds(b.productId, a.productId);
+	};
+
+	UUID productId;
+	String name;
+	double price;
+	Status status;
+	long createdOn;
+	long updatedOn;
+
+	public static ProductSnapshot of(Product product) {
+		return new ProductSnapshot(product.getProductId(), product.getName(), product.getPrice(),
+				product.getStatus(), product.getCreatedOn().getTime(),
+				product.getUpdatedOn().getTime());
+	}
+
+	public static ProductSnapshot of(ProductDTO product) {
+		return new ProductSnapshot(product.getProductId(), product.getName(), product.getPrice(),
+				product.getStatus(), product.getCreatedOn().getTime(),
+				product.getUpdatedOn().getTime());
+	}
+
+	public ProductDTO toDTO() {
+		return new ProductDTO(this.productId, this.name, this.price, this.status,
+				new Date(this.createdOn), new Date(this.updatedOn));
+	}
+
+	/**
+	 * @return a detached Product with this state
+	 */
+	public Product toProduct() {
+		Product product = new Product();
+		product.setProductId(this.productId);
+		product.setName(this.name);
+		product.setPrice(this.price);
+		product.setStatus(this.status);
+		product.setCreatedOn(new Date(this.createdOn));
+		product.setUpdatedOn(new Date(this.updatedOn));
+		return product;
+	}
+
+	public boolean isActive() {
+		return this.status == Status.ACTIVE;
+	}
+
+	/**
+	 * Compares ids the way the database orders them: unsigned, most significant byte first
+	 */
+	public static int compareIds(UUID a, UUID b) {
+		int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+		return high != 0 ? high
+				: Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+	}
+}
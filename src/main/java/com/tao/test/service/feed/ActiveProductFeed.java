@@ -0,0 +1,249 @@
+package com.tao.test.service.feed;
+
+import com.tao.test.domain.dto.ProductCursor;
+import com.tao.test.domain.dto.ProductDTO;
+import com.tao.test.domain.enums.Status;
+import com.tao.test.repository.ProductRepository;
+import com.tao.test.service.event.ProductChangedEvent;
+import com.tao.test.service.event.ProductSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * The newest ACTIVE products in listing order, kept in memory so the first pages of the listing
+ * need no database round trip.
+ * The feed always holds a prefix of the full listing: anything ACTIVE that is not in it is older
+ * than its last entry, unless it is complete and then holds every ACTIVE product.
+ */
+@Component
+@Slf4j
+public class ActiveProductFeed {
+
+	private final ProductRepository productRepository;
+	private final int capacity;
+	private final Counter hits;
+	private final Counter misses;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final NavigableSet<ProductSnapshot> entries = new TreeSet<>(ProductSnapshot.NEWEST_FIRST);
+	private final Map<UUID, ProductSnapshot> entriesById = new HashMap<>();
+	private boolean complete;
+	private Map<UUID, ProductSnapshot> changedDuringReload;
+
+	private final AtomicBoolean reloading = new AtomicBoolean();
+	private final ExecutorService reloader = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "active-product-feed");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	@Autowired
+	public ActiveProductFeed(ProductRepository productRepository, MeterRegistry meterRegistry,
+			@Value("${app.feed.capacity:1000}") int capacity) {
+		this.productRepository = productRepository;
+		this.capacity = capacity;
+		this.hits = Counter.builder("product.feed.requests").tag("result", "hit")
+				.description("Listing pages served by the active product feed")
+				.register(meterRegistry);
+		this.misses = Counter.builder("product.feed.requests").tag("result", "miss")
+				.description("Listing pages the active product feed could not serve")
+				.register(meterRegistry);
+		Gauge.builder("product.feed.size", this, ActiveProductFeed::size)
+				.description("Products held by the active product feed").register(meterRegistry);
+		Gauge.builder("product.feed.hit.ratio", this, ActiveProductFeed::hitRatio)
+				.description("Share of listing pages served by the active product feed")
+				.register(meterRegistry);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void bootstrap() {
+		requestReload();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.reloader.shutdownNow();
+	}
+
+	/**
+	 * @return the page when the feed covers it, empty when it has to come from the database
+	 */
+	public Optional<Collection<ProductDTO>> page(int pageNumber, int pageSize) {
+		long from = (long) (pageNumber - 1) * pageSize;
+		this.lock.readLock().lock();
+		try {
+			if (from + pageSize <= this.entries.size() || this.complete) {
+				Iterator<ProductSnapshot> iterator = this.entries.iterator();
+				for (long skipped = 0; skipped < from && iterator.hasNext(); skipped++) {
+					iterator.next();
+				}
+				return hit(iterator, pageSize);
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		return miss();
+	}
+
+	/**
+	 * @return the page after the cursor when the feed covers it, empty when it has to come from the database
+	 */
+	public Optional<Collection<ProductDTO>> page(ProductCursor cursor, int pageSize) {
+		ProductSnapshot position = new ProductSnapshot(cursor.getProductId(), null, 0, null,
+				cursor.getCreatedOn().getTime(), 0);
+		this.lock.readLock().lock();
+		try {
+			if (!this.entries.isEmpty()) {
+				// Sizing the tail set walks all of it, so only the page is read
+				Iterator<ProductSnapshot> tail = this.entries.tailSet(position, false).iterator();
+				List<ProductSnapshot> page = new ArrayList<>(pageSize);
+				while (page.size() < pageSize && tail.hasNext()) {
+					page.add(tail.next());
+				}
+				if (this.complete || page.size() == pageSize) {
+					return hit(page.iterator(), pageSize);
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		return miss();
+	}
+
+	private Optional<Collection<ProductDTO>> hit(Iterator<ProductSnapshot> iterator, int pageSize) {
+		List<ProductDTO> products = new ArrayList<>(pageSize);
+		while (products.size() < pageSize && iterator.hasNext()) {
+			products.add(iterator.next().toDTO());
+		}
+		this.hits.increment();
+		return Optional.of(products);
+	}
+
+	private Optional<Collection<ProductDTO>> miss() {
+		this.misses.increment();
+		return Optional.empty();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductChanged(ProductChangedEvent event) {
+		boolean reload;
+		this.lock.writeLock().lock();
+		try {
+			if (this.changedDuringReload != null) {
+				this.changedDuringReload.put(event.getCurrent().getProductId(), event.getCurrent());
+			}
+			apply(event.getCurrent());
+			reload = !this.complete && this.entries.size() < this.capacity / 2;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+		if (reload) {
+			requestReload();
+		}
+	}
+
+	private void apply(ProductSnapshot product) {
+		ProductSnapshot previous = this.entriesById.remove(product.getProductId());
+		if (previous != null) {
+			this.entries.remove(previous);
+		}
+		if (!product.isActive()) {
+			return;
+		}
+		// Without the whole listing, only products newer than the last entry keep the prefix intact
+		if (this.complete || (!this.entries.isEmpty()
+				&& ProductSnapshot.NEWEST_FIRST.compare(product, this.entries.last()) < 0)) {
+			this.entries.add(product);
+			this.entriesById.put(product.getProductId(), product);
+			if (this.entries.size() > this.capacity) {
+				this.entriesById.remove(this.entries.pollLast().getProductId());
+				this.complete = false;
+			}
+		}
+	}
+
+	private void requestReload() {
+		if (this.reloading.compareAndSet(false, true)) {
+			this.reloader.execute(this::reload);
+		}
+	}
+
+	void reload() {
+		try {
+			this.lock.writeLock().lock();
+			try {
+				this.changedDuringReload = new HashMap<>();
+			} finally {
+				this.lock.writeLock().unlock();
+			}
+			Collection<ProductDTO> newest = this.productRepository.findByStatus(Status.ACTIVE,
+					PageRequest.of(0, this.capacity));
+			this.lock.writeLock().lock();
+			try {
+				this.entries.clear();
+				this.entriesById.clear();
+				for (ProductDTO product : newest) {
+					ProductSnapshot snapshot = ProductSnapshot.of(product);
+					this.entries.add(snapshot);
+					this.entriesById.put(snapshot.getProductId(), snapshot);
+				}
+				this.complete = newest.size() < this.capacity;
+				// Changes committed while querying may be missing from the result, replay them
+				this.changedDuringReload.values().forEach(this::apply);
+			} finally {
+				this.changedDuringReload = null;
+				this.lock.writeLock().unlock();
+			}
+			log.info("Active product feed loaded {} products", newest.size());
+		} catch (RuntimeException e) {
+			this.lock.writeLock().lock();
+			try {
+				this.changedDuringReload = null;
+			} finally {
+				this.lock.writeLock().unlock();
+			}
+			log.error("Active product feed could not be loaded, listings stay on the database", e);
+		} finally {
+			this.reloading.set(false);
+		}
+	}
+
+	private int size() {
+		this.lock.readLock().lock();
+		try {
+			return this.entries.size();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private double hitRatio() {
+		double served = this.hits.count() + this.misses.count();
+		return served == 0 ? 0 : this.hits.count() / served;
+	}
+}
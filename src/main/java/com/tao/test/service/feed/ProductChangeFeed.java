@@ -0,0 +1,362 @@
+package com.tao.test.service.feed;
+
+import com.tao.test.domain.dto.ProductChangeDTO;
+import com.tao.test.domain.dto.ProductChangesDTO;
+import com.tao.test.service.event.ProductChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * The last app.changes.capacity committed Product changes seen by this instance, numbered in commit
+ * order, for clients that follow the catalogue instead of polling the listing. Numbering starts at
+ * a random epoch of this instance in the upper bits, so a cursor of an earlier run or of another
+ * instance behind the same load balancer lands outside the feed and asks for a resync, as does one
+ * that fell behind the oldest change kept. Two instances share an epoch about once in a million, seq
+ * stays below 2^53 for JavaScript clients.
+ *
+ * Waiting long-polls and event streams hold no thread: one dispatcher thread completes the polls
+ * and queues the events of each stream after each burst of changes, never writing itself. The
+ * app.changes.writers threads drain the queue of one stream at a time, so a stalled client blocks
+ * one writer until its write times out while the others keep serving the rest. A queue holds at
+ * most app.changes.stream-buffer events, a full one is refilled once its writer emptied it. A
+ * stream that fell out of the feed meanwhile gets a resync event and continues from the newest
+ * change.
+ */
+@Component
+@Slf4j
+public class ProductChangeFeed {
+
+	public static final String CHANGE_EVENT = "change";
+	public static final String RESYNC_EVENT = "resync";
+
+	private static final int EPOCH_SHIFT = 32;
+	private static final int EPOCH_BITS = 20;
+
+	private final int capacity;
+	private final int maxBatch;
+	private final long pollTimeout;
+	private final long streamTimeout;
+	private final int streamBuffer;
+	private final Counter resyncs;
+
+	private final Deque<ProductChangeDTO> changes = new ArrayDeque<>();
+	private long last = (long) ThreadLocalRandom.current().nextInt(1, 1 << EPOCH_BITS) << EPOCH_SHIFT;
+
+	private final Set<Poll> polls = ConcurrentHashMap.newKeySet();
+	private final Set<Stream> streams = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean dispatchPending = new AtomicBoolean();
+	private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "product-change-feed");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final ExecutorService writers;
+
+	@Autowired
+	public ProductChangeFeed(MeterRegistry meterRegistry,
+			@Value("${app.changes.capacity:10000}") int capacity,
+			@Value("${app.changes.max-batch:500}") int maxBatch,
+			@Value("${app.changes.poll-timeout:30000}") long pollTimeout,
+			@Value("${app.changes.stream-timeout:3600000}") long streamTimeout,
+			@Value("${app.changes.stream-buffer:1000}") int streamBuffer,
+			@Value("${app.changes.writers:4}") int writers) {
+		this.capacity = capacity;
+		this.maxBatch = maxBatch;
+		this.pollTimeout = pollTimeout;
+		this.streamTimeout = streamTimeout;
+		this.streamBuffer = streamBuffer;
+		AtomicInteger count = new AtomicInteger();
+		this.writers = Executors.newFixedThreadPool(writers, r -> {
+			Thread thread = new Thread(r, "product-change-writer-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.resyncs = Counter.builder("product.changes.resync")
+				.description("Change feed readers told to resync").register(meterRegistry);
+
+		Gauge.builder("product.changes.subscribers", this.polls, Set::size).tag("kind", "poll")
+				.description("Long-polls waiting for a change").register(meterRegistry);
+		Gauge.builder("product.changes.subscribers", this.streams, Set::size).tag("kind", "stream")
+				.description("Open change event streams").register(meterRegistry);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.dispatcher.shutdownNow();
+		this.writers.shutdownNow();
+		this.streams.forEach(stream -> stream.emitter.complete());
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductChanged(ProductChangedEvent event) {
+		synchronized (this.changes) {
+			this.last++;
+			this.changes.addLast(new ProductChangeDTO(this.last, event.getType(),
+					event.getCurrent().getProductId(), event.getCurrent().toDTO()));
+			if (this.changes.size() > this.capacity) {
+				this.changes.removeFirst();
+			}
+		}
+		dispatch();
+	}
+
+	/**
+	 * @param since seq of the last change seen, null for only changes from now on
+	 * @return at most app.changes.max-batch changes after since, waiting up to app.changes.poll-timeout
+	 * for the first one
+	 */
+	public DeferredResult<ProductChangesDTO> poll(Long since) {
+		long from = since == null ? last() : since;
+		DeferredResult<ProductChangesDTO> result = new DeferredResult<>(this.pollTimeout,
+				() -> new ProductChangesDTO(from, false, Collections.emptyList()));
+		ProductChangesDTO changes = read(from, this.maxBatch);
+		if (changes.isResync() || !changes.getChanges().isEmpty()) {
+			result.setResult(changes);
+			return result;
+		}
+		Poll poll = new Poll(from, result);
+		this.polls.add(poll);
+		result.onCompletion(() -> this.polls.remove(poll));
+		// A change committed since the read above would otherwise wait for the next one
+		dispatch();
+		return result;
+	}
+
+	/**
+	 * @param since seq of the last change seen, null for only changes from now on
+	 * @return stream of change events with their seq as id and resync events with the next since as
+	 * data, open for app.changes.stream-timeout
+	 */
+	public SseEmitter stream(Long since) {
+		SseEmitter emitter = new SseEmitter(this.streamTimeout);
+		Stream stream = new Stream(since == null ? last() : since, emitter);
+		this.streams.add(stream);
+		emitter.onCompletion(() -> this.streams.remove(stream));
+		emitter.onTimeout(emitter::complete);
+		emitter.onError(e -> this.streams.remove(stream));
+		dispatch();
+		return emitter;
+	}
+
+	/**
+	 * Keeps idle streams open through proxies and finds the ones whose client went away
+	 */
+	@Scheduled(fixedDelayString = "${app.changes.heartbeat:15000}")
+	public void heartbeat() {
+		if (this.streams.isEmpty()) {
+			return;
+		}
+		execute(() -> {
+			for (Stream stream : this.streams) {
+				if (free(stream) == this.streamBuffer) {
+					offer(stream, SseEmitter.event().comment("heartbeat"));
+				}
+			}
+		});
+	}
+
+	private long last() {
+		synchronized (this.changes) {
+			return this.last;
+		}
+	}
+
+	private ProductChangesDTO read(long since, int max) {
+		synchronized (this.changes) {
+			long first = this.last - this.changes.size() + 1;
+			if (since < first - 1 || since > this.last) {
+				this.resyncs.increment();
+				return new ProductChangesDTO(this.last, true, Collections.emptyList());
+			}
+			int count = (int) Math.min(max, this.last - since);
+			if (count == 0) {
+				return new ProductChangesDTO(since, false, Collections.emptyList());
+			}
+			List<ProductChangeDTO> page = new ArrayList<>(count);
+			Iterator<ProductChangeDTO> newestFirst = this.changes.descendingIterator();
+			for (long skip = this.last - since - count; skip > 0; skip--) {
+				newestFirst.next();
+			}
+			for (int i = 0; i < count; i++) {
+				page.add(newestFirst.next());
+			}
+			Collections.reverse(page);
+			return new ProductChangesDTO(page.get(count - 1).getSeq(), false, page);
+		}
+	}
+
+	/**
+	 * Coalesces the changes of a burst into one pass over the subscribers
+	 */
+	private void dispatch() {
+		if (this.dispatchPending.compareAndSet(false, true)) {
+			execute(() -> {
+				this.dispatchPending.set(false);
+				deliver();
+			});
+		}
+	}
+
+	private void execute(Runnable task) {
+		try {
+			this.dispatcher.execute(task);
+		} catch (RejectedExecutionException e) {
+			// shutting down
+		}
+	}
+
+	private void deliver() {
+		long last = last();
+		for (Poll poll : this.polls) {
+			if (poll.since != last) {
+				this.polls.remove(poll);
+				poll.result.setResult(read(poll.since, this.maxBatch));
+			}
+		}
+		for (Stream stream : this.streams) {
+			for (int free = free(stream); free > 0 && stream.position != last; free = free(stream)) {
+				ProductChangesDTO changes = read(stream.position, Math.min(free, this.maxBatch));
+				if (changes.isResync()) {
+					offer(stream, SseEmitter.event().name(RESYNC_EVENT).data(changes.getNext()));
+				}
+				for (ProductChangeDTO change : changes.getChanges()) {
+					offer(stream, SseEmitter.event().id(Long.toString(change.getSeq()))
+							.name(CHANGE_EVENT).data(change));
+				}
+				stream.position = changes.getNext();
+				last = Math.max(last, last());
+			}
+			if (stream.position != last) {
+				boolean drained;
+				synchronized (stream) {
+					// Drained since the queue was seen full, otherwise its writer refills it
+					drained = !stream.draining && !stream.closed;
+					stream.behind = !drained;
+				}
+				if (drained) {
+					dispatch();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return room left in the queue of the stream, 0 once it is closed
+	 */
+	private int free(Stream stream) {
+		synchronized (stream) {
+			return stream.closed ? 0 : this.streamBuffer - stream.queue.size();
+		}
+	}
+
+	private void offer(Stream stream, SseEmitter.SseEventBuilder event) {
+		boolean drain;
+		synchronized (stream) {
+			if (stream.closed) {
+				return;
+			}
+			stream.queue.addLast(event);
+			drain = !stream.draining;
+			stream.draining = true;
+		}
+		if (drain) {
+			try {
+				this.writers.execute(() -> drain(stream));
+			} catch (RejectedExecutionException e) {
+				// shutting down
+			}
+		}
+	}
+
+	/**
+	 * Writes the queued events of one stream, on a writer thread
+	 */
+	private void drain(Stream stream) {
+		boolean behind;
+		while (true) {
+			SseEmitter.SseEventBuilder event;
+			synchronized (stream) {
+				event = stream.closed ? null : stream.queue.pollFirst();
+				if (event == null) {
+					stream.draining = false;
+					behind = stream.behind;
+					stream.behind = false;
+					break;
+				}
+			}
+			try {
+				stream.emitter.send(event);
+			} catch (IOException | IllegalStateException e) {
+				log.debug("Change stream closed: {}", e.getMessage());
+				synchronized (stream) {
+					stream.closed = true;
+					stream.queue.clear();
+				}
+				this.streams.remove(stream);
+				stream.emitter.completeWithError(e);
+				return;
+			}
+		}
+		if (behind) {
+			// The queue was full, refill it
+			dispatch();
+		}
+	}
+
+	private static final class Poll {
+
+		private final long since;
+		private final DeferredResult<ProductChangesDTO> result;
+
+		private Poll(long since, DeferredResult<ProductChangesDTO> result) {
+			this.since = since;
+			this.result = result;
+		}
+	}
+
+	/**
+	 * position is only touched by the dispatcher thread, the rest under the lock of the stream
+	 */
+	private static final class Stream {
+
+		private long position;
+		private final SseEmitter emitter;
+		private final Deque<SseEmitter.SseEventBuilder> queue = new ArrayDeque<>();
+		private boolean draining;
+		private boolean closed;
+		/**
+		 * Set when the queue filled up before the stream caught up
+		 */
+		private boolean behind;
+
+		private Stream(long position, SseEmitter emitter) {
+			this.position = position;
+			this.emitter = emitter;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.tao.test.service.imports;
+
+import com.tao.test.domain.TimeOrderedUuidGenerator;
+import com.tao.test.domain.dto.ImportProgressDTO;
+import com.tao.test.domain.dto.ImportRejectedRowDTO;
+import com.tao.test.domain.enums.ImportStatus;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one import, updated by its reading thread and the writer threads.
+ * Keeps the first maxRejectedRows rejected rows, the count covers all of them.
+ */
+public class ImportJob {
+
+	private static final int MAX_ROW_LENGTH = 500;
+
+	private final String importId = TimeOrderedUuidGenerator.next().toString();
+	private final Date startedOn = new Date();
+	private final int maxRejectedRows;
+	private final AtomicLong rowsRead = new AtomicLong();
+	private final AtomicLong saved = new AtomicLong();
+	private final AtomicLong queuedForApproval = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final List<ImportRejectedRowDTO> rejectedRows = new ArrayList<>();
+	private volatile ImportStatus status = ImportStatus.RUNNING;
+	private volatile Date finishedOn;
+	private volatile String error;
+
+	public ImportJob(int maxRejectedRows) {
+		this.maxRejectedRows = maxRejectedRows;
+	}
+
+	public String getImportId() {
+		return this.importId;
+	}
+
+	public void rowRead() {
+		this.rowsRead.incrementAndGet();
+	}
+
+	public void saved(boolean queuedForApproval) {
+		this.saved.incrementAndGet();
+		if (queuedForApproval) {
+			this.queuedForApproval.incrementAndGet();
+		}
+	}
+
+	public void reject(long line, String error, String row) {
+		this.rejected.incrementAndGet();
+		synchronized (this.rejectedRows) {
+			if (this.rejectedRows.size() < this.maxRejectedRows) {
+				this.rejectedRows.add(new ImportRejectedRowDTO(line, error,
+						row.length() > MAX_ROW_LENGTH ? row.substring(0, MAX_ROW_LENGTH) : row));
+			}
+		}
+	}
+
+	public List<ImportRejectedRowDTO> rejectedRows(int from, int size) {
+		synchronized (this.rejectedRows) {
+			if (from >= this.rejectedRows.size()) {
+				return new ArrayList<>();
+			}
+			return new ArrayList<>(this.rejectedRows.subList(from,
+					Math.min(this.rejectedRows.size(), from + size)));
+		}
+	}
+
+	public boolean isFailed() {
+		return this.status == ImportStatus.FAILED;
+	}
+
+	public synchronized void complete() {
+		if (this.status == ImportStatus.RUNNING) {
+			this.status = ImportStatus.COMPLETED;
+			this.finishedOn = new Date();
+		}
+	}
+
+	public synchronized void fail(String error) {
+		if (this.status == ImportStatus.RUNNING) {
+			this.error = error;
+			this.status = ImportStatus.FAILED;
+			this.finishedOn = new Date();
+		}
+	}
+
+	public ImportProgressDTO toDTO() {
+		return new ImportProgressDTO(this.importId, this.status, this.startedOn, this.finishedOn,
+				this.rowsRead.get(), this.saved.get(), this.queuedForApproval.get(),
+				this.rejected.get(), this.error);
+	}
+}
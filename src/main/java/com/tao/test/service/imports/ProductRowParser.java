@@ -0,0 +1,101 @@
+package com.tao.test.service.imports;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tao.test.domain.dto.ProductUpdateDTO;
+import com.tao.test.domain.enums.Status;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Turns one line of an upload into a ProductUpdateDTO.
+ * Malformed lines throw IllegalArgumentException, constraints are checked when the row is written.
+ */
+public interface ProductRowParser {
+
+	ProductUpdateDTO parse(String line);
+
+	/**
+	 * One JSON object per line, fields other than name, price and status are ignored
+	 */
+	static ProductRowParser ndjson(ObjectMapper objectMapper) {
+		return line -> {
+			try {
+				return objectMapper.readValue(line, ProductUpdateDTO.class);
+			} catch (JsonProcessingException e) {
+				throw new IllegalArgumentException(e.getOriginalMessage());
+			}
+		};
+	}
+
+	/**
+	 * RFC 4180 rows, the header has to name the name, price and status columns and may have others,
+	 * so a CSV export can be imported again. Quoted fields cannot span lines.
+	 */
+	static ProductRowParser csv(String header) {
+		List<String> columns = new ArrayList<>();
+		// Spreadsheets often start the file with a byte order mark
+		for (String column : split(header.startsWith("\uFEFF") ? header.substring(1) : header)) {
+			columns.add(column.trim().toLowerCase(Locale.ROOT));
+		}
+		int name = columns.indexOf("name");
+		int price = columns.indexOf("price");
+		int status = columns.indexOf("status");
+		if (name < 0 || price < 0 || status < 0) {
+			throw new IllegalArgumentException(
+					"CSV header must name the columns name, price and status : " + header);
+		}
+		int width = Math.max(name, Math.max(price, status)) + 1;
+		return line -> {
+			List<String> fields = split(line);
+			if (fields.size() < width) {
+				throw new IllegalArgumentException("Expected at least " + width + " columns");
+			}
+			ProductUpdateDTO product = new ProductUpdateDTO();
+			product.setName(fields.get(name));
+			try {
+				product.setPrice(Double.parseDouble(fields.get(price).trim()));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid price : " + fields.get(price));
+			}
+			try {
+				product.setStatus(Status.valueOf(fields.get(status).trim().toUpperCase(Locale.ROOT)));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Invalid status : " + fields.get(status));
+			}
+			return product;
+		};
+	}
+
+	static List<String> split(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c != '"') {
+					field.append(c);
+				} else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				} else {
+					quoted = false;
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		if (quoted) {
+			throw new IllegalArgumentException("Unterminated quoted field");
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+}
@@ -0,0 +1,47 @@
+package com.tao.test.service.search;
+
+import java.util.Arrays;
+
+/**
+ * Binary indexed tree of counts over the slots 0..size-1, updated and summed in O(log size)
+ */
+final class FenwickTree {
+
+	private final int[] tree;
+
+	FenwickTree(int size) {
+		this.tree = new int[size + 1];
+	}
+
+	int size() {
+		return this.tree.length - 1;
+	}
+
+	void add(int slot, int delta) {
+		for (int i = slot + 1; i < this.tree.length; i += i & -i) {
+			this.tree[i] += delta;
+		}
+	}
+
+	/**
+	 * @return sum of the slots 0..slot, 0 when slot is negative
+	 */
+	long prefix(int slot) {
+		long sum = 0;
+		for (int i = Math.min(slot + 1, this.tree.length - 1); i > 0; i -= i & -i) {
+			sum += this.tree[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * @return sum of the slots from..to, both inclusive
+	 */
+	long range(int from, int to) {
+		return from > to ? 0 : prefix(to) - prefix(from - 1);
+	}
+
+	void clear() {
+		Arrays.fill(this.tree, 0);
+	}
+}
@@ -0,0 +1,58 @@
+package com.tao.test.service.search;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, used for posting lists
+ */
+final class IntList {
+
+	private int[] values;
+	private int size;
+
+	IntList() {
+		this.values = new int[4];
+	}
+
+	void add(int value) {
+		if (this.size == this.values.length) {
+			this.values = Arrays.copyOf(this.values, this.size << 1);
+		}
+		this.values[this.size++] = value;
+	}
+
+	int get(int index) {
+		return this.values[index];
+	}
+
+	int last() {
+		return this.size == 0 ? -1 : this.values[this.size - 1];
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * Intersection of two ascending lists
+	 */
+	static IntList intersect(IntList a, IntList b) {
+		IntList result = new IntList();
+		int i = 0;
+		int j = 0;
+		while (i < a.size && j < b.size) {
+			int x = a.values[i];
+			int y = b.values[j];
+			if (x == y) {
+				result.add(x);
+				i++;
+				j++;
+			} else if (x < y) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return result;
+	}
+}
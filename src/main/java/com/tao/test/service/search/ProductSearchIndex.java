@@ -0,0 +1,448 @@
+package com.tao.test.service.search;
+
+import com.tao.test.domain.dto.ProductCursor;
+import com.tao.test.domain.dto.ProductDTO;
+import com.tao.test.domain.dto.ProductFacetsDTO;
+import com.tao.test.domain.enums.Status;
+import com.tao.test.repository.ProductRepository;
+import com.tao.test.service.event.ProductChangedEvent;
+import com.tao.test.service.event.ProductSnapshot;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * In-memory trigram index over the names of ACTIVE products.
+ * Loaded from the database after startup and kept current from ProductChangedEvents.
+ * Names shorter than three characters are matched by scanning the live documents.
+ * Fenwick trees over price (in cents, up to app.facets.max-price) and createdOn (in hours since
+ * 2000) count the whole catalogue per range in O(log n) for the facets.
+ */
+@Component
+@Slf4j
+public class ProductSearchIndex {
+
+	private static final int BOOTSTRAP_PAGE_SIZE = 1000;
+	private static final int MIN_COMPACTION_SIZE = 4096;
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+	private static final long FIRST_HOUR = 946684800000L / HOUR; // 2000-01-01T00:00Z
+	private static final int HOURS = 100 * 366 * 24;
+
+	private final ProductRepository productRepository;
+	private final boolean enabled;
+	private final double maxFacetPrice;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<UUID, Integer> ordinals = new HashMap<>();
+	private final Map<Long, IntList> postings = new HashMap<>();
+	private final BitSet live = new BitSet();
+	private ProductSnapshot[] docs = new ProductSnapshot[1024];
+	private String[] names = new String[1024];
+	private int size;
+	private final FenwickTree priceCents;
+	private final FenwickTree createdHours;
+	private Set<UUID> changedDuringBootstrap = new HashSet<>();
+	private volatile boolean ready;
+
+	@Autowired
+	public ProductSearchIndex(ProductRepository productRepository,
+			@Value("${app.search.index.enabled:true}") boolean enabled,
+			@Value("${app.facets.max-price:10000}") double maxFacetPrice) {
+		this.productRepository = productRepository;
+		this.enabled = enabled;
+		this.maxFacetPrice = maxFacetPrice;
+		this.priceCents = new FenwickTree(enabled ? (int) Math.round(maxFacetPrice * 100) + 1 : 0);
+		this.createdHours = new FenwickTree(enabled ? HOURS : 0);
+	}
+
+	/**
+	 * @return true once the index is enabled and fully loaded, until then searches go to SQL
+	 */
+	public boolean isReady() {
+		return this.ready;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void bootstrap() {
+		if (this.enabled) {
+			Thread loader = new Thread(this::load, "product-search-index");
+			loader.setDaemon(true);
+			loader.start();
+		}
+	}
+
+	void load() {
+		long start = System.currentTimeMillis();
+		try {
+			Collection<ProductDTO> page = this.productRepository.findByStatus(Status.ACTIVE,
+					PageRequest.of(0, BOOTSTRAP_PAGE_SIZE));
+			while (!page.isEmpty()) {
+				ProductDTO last = null;
+				this.lock.writeLock().lock();
+				try {
+					for (ProductDTO product : page) {
+						// A change seen while loading is newer than the row we just read
+						if (!this.changedDuringBootstrap.contains(product.getProductId())) {
+							add(ProductSnapshot.of(product));
+						}
+						last = product;
+					}
+				} finally {
+					this.lock.writeLock().unlock();
+				}
+				if (page.size() < BOOTSTRAP_PAGE_SIZE) {
+					break;
+				}
+				page = this.productRepository.findByStatusBefore(Status.ACTIVE, last.getCreatedOn(),
+						last.getProductId(), PageRequest.of(0, BOOTSTRAP_PAGE_SIZE));
+			}
+			this.lock.writeLock().lock();
+			try {
+				this.changedDuringBootstrap = null;
+				this.ready = true;
+			} finally {
+				this.lock.writeLock().unlock();
+			}
+			log.info("Product search index loaded {} products in {} ms", this.ordinals.size(),
+					System.currentTimeMillis() - start);
+		} catch (RuntimeException e) {
+			log.error("Product search index could not be loaded, searches stay on SQL", e);
+		}
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductChanged(ProductChangedEvent event) {
+		if (!this.enabled) {
+			return;
+		}
+		ProductSnapshot current = event.getCurrent();
+		this.lock.writeLock().lock();
+		try {
+			if (this.changedDuringBootstrap != null) {
+				this.changedDuringBootstrap.add(current.getProductId());
+			}
+			remove(current.getProductId());
+			if (current.isActive()) {
+				add(current);
+			}
+			compactIfNeeded();
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Same criteria as ProductRepository.filterSearch, name matched case-insensitively
+	 *
+	 * @param cursor optional, only products after it in listing order are returned
+	 * @return ids of the matching ACTIVE products in listing order, empty when offset is past them
+	 */
+	public List<UUID> search(String productName, double minPrice, double maxPrice,
+			Date minPostedDate, Date maxPostedDate, ProductCursor cursor, long offset, int limit) {
+		String query = productName.toLowerCase(Locale.ROOT);
+		long minDate = minPostedDate.getTime();
+		long maxDate = maxPostedDate.getTime();
+		long wanted = offset + limit;
+
+		this.lock.readLock().lock();
+		try {
+			if (offset >= this.ordinals.size()) {
+				return new ArrayList<>();
+			}
+			Comparator<Integer> order = (a, b) -> ProductSnapshot.NEWEST_FIRST.compare(
+					this.docs[a], this.docs[b]);
+			// Heap keeps the newest `wanted` matches, with the oldest of them on top. Not pre-sized,
+			// it grows with the matches rather than with the requested page
+			PriorityQueue<Integer> top = new PriorityQueue<>(order.reversed());
+			IntList candidates = candidates(query);
+			int count = candidates == null ? this.size : candidates.size();
+			for (int i = 0; i < count; i++) {
+				int ordinal = candidates == null ? i : candidates.get(i);
+				if (!this.live.get(ordinal)) {
+					continue;
+				}
+				ProductSnapshot doc = this.docs[ordinal];
+				if (doc.getPrice() < minPrice || doc.getPrice() > maxPrice
+						|| doc.getCreatedOn() < minDate || doc.getCreatedOn() > maxDate
+						|| !isAfter(doc, cursor) || !this.names[ordinal].contains(query)) {
+					continue;
+				}
+				top.offer(ordinal);
+				if (top.size() > wanted) {
+					top.poll();
+				}
+			}
+			List<Integer> matches = new ArrayList<>(top);
+			matches.sort(order);
+			List<UUID> productIds = new ArrayList<>(limit);
+			// Below the index size after the check above
+			for (int i = (int) offset; i < matches.size(); i++) {
+				productIds.add(this.docs[matches.get(i)].getProductId());
+			}
+			return productIds;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Counts the ACTIVE products whose name contains productName, case-insensitively.
+	 * Without a name the counts come from the Fenwick trees, otherwise from the trigram candidates.
+	 *
+	 * @param priceBounds ascending, bucket i holds prices from priceBounds[i] up to priceBounds[i + 1]
+	 * @param postedWithinDays window of each posting age count, see ProductFacetsDTO.postedSince
+	 */
+	public ProductFacetsDTO facets(String productName, double[] priceBounds, int[] postedWithinDays,
+			long now) {
+		String query = productName.toLowerCase(Locale.ROOT);
+		long[] since = new long[postedWithinDays.length];
+		for (int i = 0; i < since.length; i++) {
+			since[i] = ProductFacetsDTO.postedSince(now, postedWithinDays[i]);
+		}
+		long[] priceCounts = new long[priceBounds.length];
+		long[] postedCounts = new long[since.length];
+		long total;
+
+		this.lock.readLock().lock();
+		try {
+			if (query.isEmpty() && priceBounds[0] >= 0
+					&& priceBounds[priceBounds.length - 1] <= this.maxFacetPrice) {
+				total = this.priceCents.prefix(this.priceCents.size() - 1);
+				for (int i = 0; i < priceBounds.length; i++) {
+					int to = i + 1 < priceBounds.length ? boundSlot(priceBounds[i + 1]) - 1
+							: this.priceCents.size() - 1;
+					priceCounts[i] = this.priceCents.range(boundSlot(priceBounds[i]), to);
+				}
+				for (int i = 0; i < since.length; i++) {
+					postedCounts[i] = this.createdHours.range(hourSlot(since[i]),
+							this.createdHours.size() - 1);
+				}
+			} else {
+				total = 0;
+				IntList candidates = candidates(query);
+				int count = candidates == null ? this.size : candidates.size();
+				for (int i = 0; i < count; i++) {
+					int ordinal = candidates == null ? i : candidates.get(i);
+					if (!this.live.get(ordinal) || !this.names[ordinal].contains(query)) {
+						continue;
+					}
+					ProductSnapshot doc = this.docs[ordinal];
+					total++;
+					int bucket = bucketOf(priceBounds, doc.getPrice());
+					if (bucket >= 0) {
+						priceCounts[bucket]++;
+					}
+					for (int j = 0; j < since.length; j++) {
+						if (doc.getCreatedOn() >= since[j]) {
+							postedCounts[j]++;
+						}
+					}
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+
+		List<ProductFacetsDTO.PriceBucket> price = new ArrayList<>(priceBounds.length);
+		for (int i = 0; i < priceBounds.length; i++) {
+			price.add(new ProductFacetsDTO.PriceBucket(priceBounds[i],
+					i + 1 < priceBounds.length ? priceBounds[i + 1] : null, priceCounts[i]));
+		}
+		List<ProductFacetsDTO.PostedWithin> posted = new ArrayList<>(since.length);
+		for (int i = 0; i < since.length; i++) {
+			posted.add(new ProductFacetsDTO.PostedWithin(postedWithinDays[i], new Date(since[i]),
+					postedCounts[i]));
+		}
+		return new ProductFacetsDTO(total, price, posted);
+	}
+
+	/**
+	 * @return index of the last bound not above price, -1 when price is below the first bound
+	 */
+	private static int bucketOf(double[] bounds, double price) {
+		int low = 0;
+		int high = bounds.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (bounds[mid] <= price) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * @return first cent slot at or above the bound
+	 */
+	private static int boundSlot(double bound) {
+		return (int) Math.ceil(bound * 100 - 1e-6);
+	}
+
+	private int priceSlot(double price) {
+		return (int) Math.max(0, Math.min(this.priceCents.size() - 1, Math.round(price * 100)));
+	}
+
+	private int hourSlot(long time) {
+		return (int) Math.max(0, Math.min(this.createdHours.size() - 1,
+				Math.floorDiv(time, HOUR) - FIRST_HOUR));
+	}
+
+	/**
+	 * Same criteria as search
+	 *
+	 * @return the number of matches, counting stops at limit
+	 */
+	public long count(String productName, double minPrice, double maxPrice, Date minPostedDate,
+			Date maxPostedDate, long limit) {
+		String query = productName.toLowerCase(Locale.ROOT);
+		long minDate = minPostedDate.getTime();
+		long maxDate = maxPostedDate.getTime();
+
+		this.lock.readLock().lock();
+		try {
+			IntList candidates = candidates(query);
+			int count = candidates == null ? this.size : candidates.size();
+			long matches = 0;
+			for (int i = 0; i < count && matches < limit; i++) {
+				int ordinal = candidates == null ? i : candidates.get(i);
+				if (!this.live.get(ordinal)) {
+					continue;
+				}
+				ProductSnapshot doc = this.docs[ordinal];
+				if (doc.getPrice() >= minPrice && doc.getPrice() <= maxPrice
+						&& doc.getCreatedOn() >= minDate && doc.getCreatedOn() <= maxDate
+						&& this.names[ordinal].contains(query)) {
+					matches++;
+				}
+			}
+			return matches;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private static boolean isAfter(ProductSnapshot doc, ProductCursor cursor) {
+		if (cursor == null) {
+			return true;
+		}
+		long cursorDate = cursor.getCreatedOn().getTime();
+		return doc.getCreatedOn() < cursorDate || (doc.getCreatedOn() == cursorDate
+				&& ProductSnapshot.compareIds(doc.getProductId(), cursor.getProductId()) < 0);
+	}
+
+	/**
+	 * @return ordinals containing every trigram of the query, or null when the query is too short to use the index
+	 */
+	private IntList candidates(String query) {
+		if (query.length() < 3) {
+			return null;
+		}
+		List<IntList> lists = new ArrayList<>();
+		for (long trigram : trigrams(query)) {
+			IntList list = this.postings.get(trigram);
+			if (list == null) {
+				return new IntList();
+			}
+			lists.add(list);
+		}
+		lists.sort(Comparator.comparingInt(IntList::size));
+		IntList result = lists.get(0);
+		for (int i = 1; i < lists.size() && result.size() > 0; i++) {
+			result = IntList.intersect(result, lists.get(i));
+		}
+		return result;
+	}
+
+	private void add(ProductSnapshot product) {
+		int ordinal = this.size++;
+		if (ordinal == this.docs.length) {
+			this.docs = Arrays.copyOf(this.docs, ordinal << 1);
+			this.names = Arrays.copyOf(this.names, ordinal << 1);
+		}
+		String name = product.getName() == null ? "" : product.getName().toLowerCase(Locale.ROOT);
+		this.docs[ordinal] = product;
+		this.names[ordinal] = name;
+		this.live.set(ordinal);
+		this.ordinals.put(product.getProductId(), ordinal);
+		this.priceCents.add(priceSlot(product.getPrice()), 1);
+		this.createdHours.add(hourSlot(product.getCreatedOn()), 1);
+		for (long trigram : trigrams(name)) {
+			IntList list = this.postings.computeIfAbsent(trigram, t -> new IntList());
+			if (list.last() != ordinal) {
+				list.add(ordinal);
+			}
+		}
+	}
+
+	private void remove(UUID productId) {
+		Integer ordinal = this.ordinals.remove(productId);
+		if (ordinal != null) {
+			this.priceCents.add(priceSlot(this.docs[ordinal].getPrice()), -1);
+			this.createdHours.add(hourSlot(this.docs[ordinal].getCreatedOn()), -1);
+			this.live.clear(ordinal);
+			this.docs[ordinal] = null;
+			this.names[ordinal] = null;
+		}
+	}
+
+	/**
+	 * Rebuilds the postings once removed documents outnumber the live ones
+	 */
+	private void compactIfNeeded() {
+		int liveCount = this.ordinals.size();
+		if (this.size < MIN_COMPACTION_SIZE || this.size - liveCount <= liveCount) {
+			return;
+		}
+		List<ProductSnapshot> products = new ArrayList<>(liveCount);
+		for (int ordinal = this.live.nextSetBit(0); ordinal >= 0;
+				ordinal = this.live.nextSetBit(ordinal + 1)) {
+			products.add(this.docs[ordinal]);
+		}
+		this.ordinals.clear();
+		this.postings.clear();
+		this.live.clear();
+		this.priceCents.clear();
+		this.createdHours.clear();
+		this.docs = new ProductSnapshot[Math.max(1024, liveCount << 1)];
+		this.names = new String[this.docs.length];
+		this.size = 0;
+		products.forEach(this::add);
+	}
+
+	private static Collection<Long> trigrams(String text) {
+		if (text.length() < 3) {
+			return Collections.emptySet();
+		}
+		Set<Long> trigrams = new HashSet<>();
+		for (int i = 0; i + 3 <= text.length(); i++) {
+			trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16)
+					| text.charAt(i + 2));
+		}
+		return trigrams;
+	}
+}
@@ -0,0 +1,23 @@
+-- Rolls back uuid-char-to-binary.mysql.sql, for returning to app.id.storage=CHAR (MySQL 8).
+
+ALTER TABLE product DROP INDEX idx_product_status_created;
+ALTER TABLE product ADD COLUMN product_id_char VARCHAR(255) NULL;
+UPDATE product SET product_id_char = BIN_TO_UUID(product_id);
+ALTER TABLE product
+    DROP PRIMARY KEY,
+    DROP COLUMN product_id,
+    RENAME COLUMN product_id_char TO product_id,
+    MODIFY product_id VARCHAR(255) NOT NULL,
+    ADD PRIMARY KEY (product_id);
+CREATE INDEX idx_product_status_created ON product (status, created_on, product_id);
+
+ALTER TABLE approval_queue ADD COLUMN approval_id_char VARCHAR(255) NULL, ADD COLUMN product_id_char VARCHAR(255) NULL;
+UPDATE approval_queue SET approval_id_char = BIN_TO_UUID(approval_id), product_id_char = BIN_TO_UUID(product_id);
+ALTER TABLE approval_queue
+    DROP PRIMARY KEY,
+    DROP COLUMN approval_id,
+    DROP COLUMN product_id,
+    RENAME COLUMN approval_id_char TO approval_id,
+    RENAME COLUMN product_id_char TO product_id,
+    MODIFY approval_id VARCHAR(255) NOT NULL,
+    ADD PRIMARY KEY (approval_id);
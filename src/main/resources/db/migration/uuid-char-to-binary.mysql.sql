@@ -0,0 +1,28 @@
+-- Converts the uuid-char keys to BINARY(16) for app.id.storage=BINARY (MySQL 8).
+-- Stop the application, run this script, then start it with app.id.storage=BINARY.
+-- UUID_TO_BIN without the swap flag keeps the byte order Hibernate uses for uuid-binary.
+
+ALTER TABLE product DROP INDEX idx_product_status_created;
+ALTER TABLE product ADD COLUMN product_id_bin BINARY(16) NULL;
+UPDATE product SET product_id_bin = UUID_TO_BIN(product_id);
+ALTER TABLE product
+    DROP PRIMARY KEY,
+    DROP COLUMN product_id,
+    RENAME COLUMN product_id_bin TO product_id,
+    MODIFY product_id BINARY(16) NOT NULL,
+    ADD PRIMARY KEY (product_id);
+CREATE INDEX idx_product_status_created ON product (status, created_on, product_id);
+
+ALTER TABLE approval_queue ADD COLUMN approval_id_bin BINARY(16) NULL, ADD COLUMN product_id_bin BINARY(16) NULL;
+UPDATE approval_queue SET approval_id_bin = UUID_TO_BIN(approval_id), product_id_bin = UUID_TO_BIN(product_id);
+ALTER TABLE approval_queue
+    DROP PRIMARY KEY,
+    DROP COLUMN approval_id,
+    DROP COLUMN product_id,
+    RENAME COLUMN approval_id_bin TO approval_id,
+    RENAME COLUMN product_id_bin TO product_id,
+    MODIFY approval_id BINARY(16) NOT NULL,
+    ADD PRIMARY KEY (approval_id);
+
+-- Rebuild so the pages are packed after the rewrite
+OPTIMIZE TABLE product, approval_queue;
@@ -0,0 +1,106 @@
+package com.tao.test.benchmark;
+
+import com.tao.test.CoreApplication;
+import com.tao.test.service.search.ProductSearchIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application without a web server for the benchmarks, in the perf profile.
+ * Runs on its own in-memory H2 database in MySQL mode, or on the scratch database given by
+ * -Dbench.datasource.url (its tables are dropped and recreated). Unless given, the approval backlog
+ * is 5% of app.perf.products.
+ */
+public final class BenchmarkApplication {
+
+	private static final long LOAD_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+	private BenchmarkApplication() {
+	}
+
+	/**
+	 * @param properties application properties as key=value, e.g. app.perf.products=100000
+	 * @return the started context, once the search index and the feed are loaded
+	 */
+	public static ConfigurableApplicationContext start(String... properties) {
+		return start(WebApplicationType.NONE, properties);
+	}
+
+	/**
+	 * Same as start, with the web server on a random port, see port(context)
+	 */
+	public static ConfigurableApplicationContext startWeb(String... properties) {
+		String[] withPort = Arrays.copyOf(properties, properties.length + 1);
+		withPort[properties.length] = "server.port=0";
+		return start(WebApplicationType.SERVLET, withPort);
+	}
+
+	public static int port(ConfigurableApplicationContext context) {
+		return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+	}
+
+	private static ConfigurableApplicationContext start(WebApplicationType type,
+			String... properties) {
+		List<String> args = new ArrayList<>();
+		String url = System.getProperty("bench.datasource.url");
+		if (url == null) {
+			args.add("--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID()
+					+ ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+			args.add("--spring.datasource.username=sa");
+			args.add("--spring.datasource.password=");
+			args.add("--spring.datasource.driver-class-name=org.h2.Driver");
+		} else {
+			args.add("--spring.datasource.url=" + url);
+			args.add("--spring.datasource.username=" + System.getProperty("bench.datasource.username", "root"));
+			args.add("--spring.datasource.password=" + System.getProperty("bench.datasource.password", ""));
+		}
+		args.add("--spring.profiles.active=perf");
+		args.add("--spring.jpa.hibernate.ddl-auto=create");
+		args.add("--spring.jpa.show-sql=false");
+		args.add("--logging.level.root=WARN");
+		boolean backlog = false;
+		for (String property : properties) {
+			args.add("--" + property);
+			backlog |= property.startsWith("app.perf.approval-backlog=");
+		}
+		for (String property : properties) {
+			if (!backlog && property.startsWith("app.perf.products=")) {
+				int products = Integer.parseInt(property.substring(property.indexOf('=') + 1));
+				args.add("--app.perf.approval-backlog=" + products / 20);
+			}
+		}
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(CoreApplication.class)
+				.web(type).bannerMode(Banner.Mode.OFF)
+				.run(args.toArray(new String[0]));
+		awaitLoaded(context);
+		return context;
+	}
+
+	private static void awaitLoaded(ConfigurableApplicationContext context) {
+		boolean indexEnabled = context.getEnvironment().getProperty("app.search.index.enabled",
+				Boolean.class, true);
+		ProductSearchIndex index = context.getBean(ProductSearchIndex.class);
+		MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+		long deadline = System.currentTimeMillis() + LOAD_TIMEOUT_MILLIS;
+		while ((indexEnabled && !index.isReady())
+				|| meterRegistry.get("product.feed.size").gauge().value() == 0) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("Search index or feed not loaded in time");
+			}
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
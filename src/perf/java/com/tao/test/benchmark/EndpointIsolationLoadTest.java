@@ -0,0 +1,97 @@
+package com.tao.test.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Load test for the EndpointClass executors: load.clients clients hammer a slow GET /products/search
+ * (LIKE over load.products rows) while one client creates products with POST /products.
+ * Runs once with app.async.enabled=false and once with true, on the same small Tomcat pool, and prints
+ * the POST latencies of both. Without isolation the creates queue behind the searches.
+ *
+ * mvn -Pperf test-compile exec:exec -Dperf.main=com.tao.test.benchmark.EndpointIsolationLoadTest
+ * -Djmh.args= -Dperf.jvm.args="-Dload.clients=64 -Dload.duration=20"
+ */
+public final class EndpointIsolationLoadTest {
+
+	private static final String SLOW_SEARCH = "/api/products/search?productName=12345&pageSize=50";
+	private static final String CREATE = "/api/products";
+	private static final String PRODUCT = "{\"name\":\"load test\",\"price\":10,\"status\":\"ACTIVE\"}";
+
+	private EndpointIsolationLoadTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int products = Integer.getInteger("load.products", 200000);
+		int clients = Integer.getInteger("load.clients", 64);
+		long durationMillis = TimeUnit.SECONDS.toMillis(Long.getLong("load.duration", 20L));
+		List<String> report = new ArrayList<>();
+		for (boolean async : new boolean[] {false, true}) {
+			ConfigurableApplicationContext context = BenchmarkApplication.startWeb(
+					"app.perf.products=" + products, "app.search.index.enabled=false",
+					"server.tomcat.threads.max=16", "app.async.enabled=" + async);
+			try {
+				report.add(run("async=" + async, BenchmarkApplication.port(context), clients,
+						durationMillis));
+			} finally {
+				context.close();
+			}
+		}
+		report.forEach(System.out::println);
+	}
+
+	private static String run(String label, int port, int clients, long durationMillis)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + durationMillis;
+		AtomicLong searches = new AtomicLong();
+		AtomicLong searchesRejected = new AtomicLong();
+		ExecutorService load = Executors.newFixedThreadPool(clients);
+		for (int i = 0; i < clients; i++) {
+			load.execute(() -> {
+				while (System.currentTimeMillis() < deadline) {
+					int status = call(port, "GET", SLOW_SEARCH, null);
+					(status == 200 ? searches : searchesRejected).incrementAndGet();
+				}
+			});
+		}
+		// Let the searches saturate the server before probing
+		Thread.sleep(2000);
+		List<Long> latencies = new ArrayList<>();
+		int createsFailed = 0;
+		while (System.currentTimeMillis() < deadline) {
+			long start = System.nanoTime();
+			int status = call(port, "POST", CREATE, PRODUCT);
+			if (status == 200) {
+				latencies.add(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+			} else {
+				createsFailed++;
+			}
+			Thread.sleep(20);
+		}
+		load.shutdown();
+		load.awaitTermination(1, TimeUnit.MINUTES);
+		Collections.sort(latencies);
+		return String.format("%s: POST /products n=%d failed=%d p50=%.1fms p99=%.1fms max=%.1fms, "
+						+ "searches ok=%d rejected=%d", label, latencies.size(), createsFailed,
+				percentile(latencies, 0.50), percentile(latencies, 0.99),
+				percentile(latencies, 1.0), searches.get(), searchesRejected.get());
+	}
+
+	private static double percentile(List<Long> sorted, double percentile) {
+		if (sorted.isEmpty()) {
+			return Double.NaN;
+		}
+		int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+		return sorted.get(Math.max(0, index)) / 1000.0;
+	}
+
+	private static int call(int port, String method, String path, String body) {
+		return LoadHttp.call("http://localhost:" + port + path, method, body);
+	}
+}
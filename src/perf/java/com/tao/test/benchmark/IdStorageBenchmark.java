@@ -0,0 +1,75 @@
+package com.tao.test.benchmark;
+
+import com.tao.test.domain.dto.BatchItemResultDTO;
+import com.tao.test.domain.dto.ProductUpdateDTO;
+import com.tao.test.domain.enums.Status;
+import com.tao.test.service.ProductBatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Insert throughput with ids stored as CHAR(36) strings or BINARY(16), into an already populated table.
+ * Run it with -Dbench.datasource.url against MySQL to see the InnoDB primary key effect, H2 only shows
+ * the difference in bytes bound and compared.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IdStorageBenchmark {
+
+	private static final int BATCH_SIZE = 100;
+
+	@Param({"CHAR", "BINARY"})
+	String idStorage;
+
+	@Param({"100000"})
+	int products;
+
+	private ConfigurableApplicationContext context;
+	private ProductBatchService productBatchService;
+	private List<ProductUpdateDTO> batch;
+
+	@Setup
+	public void setUp() {
+		this.context = BenchmarkApplication.start("app.perf.products=" + this.products,
+				"app.id.storage=" + this.idStorage, "app.search.index.enabled=false");
+		this.productBatchService = this.context.getBean(ProductBatchService.class);
+		this.batch = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			ProductUpdateDTO product = new ProductUpdateDTO();
+			product.setName("kelp " + i);
+			product.setPrice(10 + i);
+			product.setStatus(Status.ACTIVE);
+			this.batch.add(product);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public List<BatchItemResultDTO> insertProducts() {
+		return this.productBatchService.createProducts(this.batch);
+	}
+}
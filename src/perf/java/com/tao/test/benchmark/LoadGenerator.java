@@ -0,0 +1,409 @@
+package com.tao.test.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tao.test.config.PerfDataSeeder;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * HTTP load generator with a storefront and moderation mix of list, search, create, update and approve
+ * calls. Writes requests, errors, throughput and p50/p99/p999 latency per endpoint to load.report.
+ *
+ * load.mode=closed runs load.clients clients that each wait for their response (plus load.think-ms)
+ * before the next call. load.mode=open starts load.rate calls per second whatever the response times,
+ * and measures each from its scheduled start, so a stalled server shows up as latency instead of as
+ * fewer requests. Without load.url the application is started in the perf profile on H2 with
+ * load.products seeded products.
+ *
+ * mvn -Pperf test-compile exec:exec -Dperf.main=com.tao.test.benchmark.LoadGenerator -Djmh.args=
+ * -Dperf.jvm.args="-Dload.mode=open -Dload.rate=500 -Dload.duration=60"
+ */
+public final class LoadGenerator {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final int PRODUCT_SAMPLE = 10000;
+	private static final int APPROVAL_PAGE = 50;
+
+	private final String baseUrl;
+	private final Map<Operation, Integer> mix;
+	private final int totalWeight;
+	private final double maxAutoApprovePrice;
+	private final Map<Operation, Latencies> latencies = new EnumMap<>(Operation.class);
+	private final List<String> productIds = new ArrayList<>();
+	private final Queue<String> approvalIds = new ConcurrentLinkedQueue<>();
+	private final Set<String> issuedApprovalIds = ConcurrentHashMap.newKeySet();
+	private final AtomicLong skippedApprovals = new AtomicLong();
+	private volatile long recordFromNanos;
+
+	private LoadGenerator(String baseUrl, Map<Operation, Integer> mix, double maxAutoApprovePrice) {
+		this.baseUrl = baseUrl;
+		this.mix = mix;
+		this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+		this.maxAutoApprovePrice = maxAutoApprovePrice;
+		for (Operation operation : Operation.values()) {
+			this.latencies.put(operation, new Latencies());
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		String url = System.getProperty("load.url");
+		String mode = System.getProperty("load.mode", "closed");
+		int products = Integer.getInteger("load.products", 100000);
+		int clients = Integer.getInteger("load.clients", 32);
+		long thinkMillis = Long.getLong("load.think-ms", 0L);
+		int rate = Integer.getInteger("load.rate", 500);
+		int maxInFlight = Integer.getInteger("load.max-in-flight", 512);
+		long warmupSeconds = Long.getLong("load.warmup", 10L);
+		long durationSeconds = Long.getLong("load.duration", 60L);
+		String mixSpec = System.getProperty("load.mix",
+				"list=40,search=30,create=10,update=10,approve=10");
+		Path reportFile = Paths.get(System.getProperty("load.report", "target/load-" + mode + "-"
+				+ LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".txt"));
+		if (!mode.equals("closed") && !mode.equals("open")) {
+			throw new IllegalArgumentException("load.mode must be closed or open, not " + mode);
+		}
+
+		ConfigurableApplicationContext context = null;
+		String target = url;
+		double maxAutoApprovePrice = Double.parseDouble(
+				System.getProperty("load.auto-approve-price", "5000"));
+		if (url == null) {
+			context = BenchmarkApplication.startWeb("app.perf.products=" + products);
+			url = "http://localhost:" + BenchmarkApplication.port(context) + "/api";
+			target = "embedded perf profile, app.perf.products=" + products;
+			maxAutoApprovePrice = context.getEnvironment().getRequiredProperty(
+					"app.max.auto-approve.price", Double.class);
+		}
+		try {
+			LoadGenerator generator = new LoadGenerator(url, parseMix(mixSpec), maxAutoApprovePrice);
+			generator.sampleProductIds();
+			long warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+			long durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+			String settings;
+			if (mode.equals("closed")) {
+				settings = "mode=closed clients=" + clients + " think-ms=" + thinkMillis;
+				generator.runClosed(clients, thinkMillis, warmupNanos, durationNanos);
+			} else {
+				settings = "mode=open rate=" + rate + "/s max-in-flight=" + maxInFlight;
+				generator.runOpen(rate, maxInFlight, warmupNanos, durationNanos);
+			}
+			String report = generator.report(settings + " warmup=" + warmupSeconds + "s duration="
+					+ durationSeconds + "s mix=" + mixSpec, target, durationSeconds);
+			if (reportFile.getParent() != null) {
+				Files.createDirectories(reportFile.getParent());
+			}
+			Files.write(reportFile, report.getBytes(StandardCharsets.UTF_8));
+			System.out.print(report);
+			System.out.println("Report written to " + reportFile.toAbsolutePath());
+		} finally {
+			if (context != null) {
+				context.close();
+			}
+		}
+	}
+
+	private static Map<Operation, Integer> parseMix(String spec) {
+		Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+		for (String part : spec.split(",")) {
+			String[] entry = part.trim().split("=");
+			mix.put(Operation.valueOf(entry[0].trim().toUpperCase(Locale.ROOT)),
+					Integer.valueOf(entry[1].trim()));
+		}
+		return mix;
+	}
+
+	/**
+	 * Product ids for the updates, from the start of the NDJSON export
+	 */
+	private void sampleProductIds() throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		int status = LoadHttp.call(this.baseUrl + "/products/export", "GET", null, body);
+		if (status != 200) {
+			throw new IllegalStateException("Export failed with status " + status);
+		}
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new ByteArrayInputStream(body.toByteArray()), StandardCharsets.UTF_8))) {
+			for (String line = reader.readLine(); line != null && this.productIds.size() < PRODUCT_SAMPLE;
+					line = reader.readLine()) {
+				this.productIds.add(MAPPER.readTree(line).get("productId").asText());
+			}
+		}
+		if (this.productIds.isEmpty()) {
+			throw new IllegalStateException("No ACTIVE products to update, seed the database first");
+		}
+	}
+
+	private void runClosed(int clients, long thinkMillis, long warmupNanos, long durationNanos)
+			throws InterruptedException {
+		long start = System.nanoTime();
+		this.recordFromNanos = start + warmupNanos;
+		long end = this.recordFromNanos + durationNanos;
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+		for (int i = 0; i < clients; i++) {
+			pool.execute(() -> {
+				while (System.nanoTime() < end) {
+					execute(System.nanoTime());
+					if (thinkMillis > 0) {
+						LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(thinkMillis));
+					}
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(durationNanos + warmupNanos + TimeUnit.MINUTES.toNanos(2),
+				TimeUnit.NANOSECONDS);
+	}
+
+	private void runOpen(int rate, int maxInFlight, long warmupNanos, long durationNanos)
+			throws InterruptedException {
+		long start = System.nanoTime();
+		this.recordFromNanos = start + warmupNanos;
+		long end = this.recordFromNanos + durationNanos;
+		long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+		// Calls beyond maxInFlight wait in the queue, and that wait counts towards their latency
+		ExecutorService pool = Executors.newFixedThreadPool(maxInFlight);
+		for (long scheduled = start; scheduled < end; scheduled += interval) {
+			long wait = scheduled - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			long intended = scheduled;
+			pool.execute(() -> execute(intended));
+		}
+		pool.shutdown();
+		if (!pool.awaitTermination(2, TimeUnit.MINUTES)) {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs one call of the mix and records its latency from startNanos
+	 */
+	private void execute(long startNanos) {
+		Operation operation = pick();
+		int status = call(operation);
+		if (status == 0) {
+			return;
+		}
+		long end = System.nanoTime();
+		if (startNanos >= this.recordFromNanos) {
+			this.latencies.get(operation).record(TimeUnit.NANOSECONDS.toMicros(end - startNanos),
+					status < 200 || status >= 400);
+		}
+	}
+
+	private Operation pick() {
+		int draw = ThreadLocalRandom.current().nextInt(this.totalWeight);
+		for (Map.Entry<Operation, Integer> entry : this.mix.entrySet()) {
+			draw -= entry.getValue();
+			if (draw < 0) {
+				return entry.getKey();
+			}
+		}
+		throw new IllegalStateException("Empty mix");
+	}
+
+	/**
+	 * @return the status, 0 when nothing was sent
+	 */
+	private int call(Operation operation) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		switch (operation) {
+		case LIST:
+			// Mostly the first pages, which the feed serves, sometimes deeper ones from the database
+			int page = random.nextInt(10) < 8 ? 1 + random.nextInt(3) : 4 + random.nextInt(47);
+			return LoadHttp.call(this.baseUrl + "/products?pageSize=20&pageNumber=" + page, "GET",
+					null);
+		case SEARCH:
+			double minPrice = random.nextInt(4) * 1000;
+			return LoadHttp.call(this.baseUrl + "/products/search?pageSize=20&productName="
+					+ word(random) + "&minPrice=" + minPrice + "&maxPrice=" + (minPrice + 2000), "GET",
+					null);
+		case CREATE:
+			// One in five needs approval, which keeps the backlog fed
+			double price = random.nextInt(5) == 0 ? this.maxAutoApprovePrice + 1 + random.nextInt(1000)
+					: 1 + random.nextInt((int) this.maxAutoApprovePrice);
+			return LoadHttp.call(this.baseUrl + "/products", "POST", product(random, price));
+		case UPDATE:
+			String productId = this.productIds.get(random.nextInt(this.productIds.size()));
+			return LoadHttp.call(this.baseUrl + "/products/" + productId, "PUT",
+					product(random, 1 + random.nextInt((int) this.maxAutoApprovePrice)));
+		case APPROVE:
+			String approvalId = nextApprovalId();
+			if (approvalId == null) {
+				this.skippedApprovals.incrementAndGet();
+				return 0;
+			}
+			return LoadHttp.call(this.baseUrl + "/products/approval-queue/" + approvalId + "/approve",
+					"PUT", null);
+		default:
+			throw new IllegalStateException(operation.name());
+		}
+	}
+
+	private static String word(ThreadLocalRandom random) {
+		return PerfDataSeeder.WORDS[random.nextInt(PerfDataSeeder.WORDS.length)];
+	}
+
+	private static String product(ThreadLocalRandom random, double price) {
+		return "{\"name\":\"" + word(random) + " " + word(random) + " load\",\"price\":" + price
+				+ ",\"status\":\"ACTIVE\"}";
+	}
+
+	/**
+	 * @return an approval id no other call got, null when the queue is empty
+	 */
+	private String nextApprovalId() {
+		String approvalId = this.approvalIds.poll();
+		if (approvalId != null) {
+			return approvalId;
+		}
+		synchronized (this.approvalIds) {
+			if (this.approvalIds.isEmpty()) {
+				refillApprovalIds();
+			}
+		}
+		return this.approvalIds.poll();
+	}
+
+	private void refillApprovalIds() {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		// Approved entries leave the queue, so the first page holds the oldest not yet approved
+		if (LoadHttp.call(this.baseUrl + "/products/approval-queue?pageSize=" + APPROVAL_PAGE,
+				"GET", null, body) != 200) {
+			return;
+		}
+		try {
+			for (JsonNode entry : MAPPER.readTree(body.toByteArray())) {
+				String approvalId = entry.path("approvalId").asText(null);
+				if (approvalId != null && this.issuedApprovalIds.add(approvalId)) {
+					this.approvalIds.add(approvalId);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private String report(String settings, String target, long durationSeconds) {
+		StringWriter text = new StringWriter();
+		PrintWriter out = new PrintWriter(text);
+		out.printf("# load report %s%n", Instant.now());
+		out.printf("# %s%n", settings);
+		out.printf("# target=%s%n", target);
+		out.printf("# java=%s os=%s cpus=%d%n", System.getProperty("java.version"),
+				System.getProperty("os.name"), Runtime.getRuntime().availableProcessors());
+		out.printf("%-40s %9s %7s %10s %9s %9s %9s %9s%n", "endpoint", "requests", "errors",
+				"req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+		Latencies all = new Latencies();
+		for (Operation operation : Operation.values()) {
+			Latencies latencies = this.latencies.get(operation);
+			if (this.mix.containsKey(operation)) {
+				row(out, operation.endpoint, latencies, durationSeconds);
+				all.addAll(latencies);
+			}
+		}
+		row(out, "all", all, durationSeconds);
+		if (this.skippedApprovals.get() > 0) {
+			out.printf("# %d approvals skipped on an empty approval queue%n",
+					this.skippedApprovals.get());
+		}
+		out.flush();
+		return text.toString();
+	}
+
+	private static void row(PrintWriter out, String endpoint, Latencies latencies,
+			long durationSeconds) {
+		long[] sorted = latencies.sorted();
+		out.printf(Locale.ROOT, "%-40s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n", endpoint,
+				sorted.length, latencies.errors, (double) sorted.length / durationSeconds,
+				percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+				percentile(sorted, 1.0));
+	}
+
+	private static double percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return Double.NaN;
+		}
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1000.0;
+	}
+
+	private enum Operation {
+		LIST("GET /products"),
+		SEARCH("GET /products/search"),
+		CREATE("POST /products"),
+		UPDATE("PUT /products/{productId}"),
+		APPROVE("PUT /products/approval-queue/{id}/approve");
+
+		private final String endpoint;
+
+		Operation(String endpoint) {
+			this.endpoint = endpoint;
+		}
+	}
+
+	/**
+	 * Latencies in microseconds of one endpoint
+	 */
+	private static final class Latencies {
+
+		private long[] values = new long[1024];
+		private int size;
+		private long errors;
+
+		synchronized void record(long micros, boolean error) {
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, this.size << 1);
+			}
+			this.values[this.size++] = micros;
+			if (error) {
+				this.errors++;
+			}
+		}
+
+		synchronized void addAll(Latencies other) {
+			long[] values = other.sorted();
+			for (long value : values) {
+				record(value, false);
+			}
+			this.errors += other.errors;
+		}
+
+		synchronized long[] sorted() {
+			long[] sorted = Arrays.copyOf(this.values, this.size);
+			Arrays.sort(sorted);
+			return sorted;
+		}
+	}
+}
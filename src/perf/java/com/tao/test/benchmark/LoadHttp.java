@@ -0,0 +1,63 @@
+package com.tao.test.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Blocking JSON calls for the load tests, on keep-alive connections reused by HttpURLConnection
+ */
+final class LoadHttp {
+
+	private static final int TIMEOUT_MILLIS = 60000;
+
+	private LoadHttp() {
+	}
+
+	/**
+	 * @return the status, -1 when the call failed without one
+	 */
+	static int call(String url, String method, String body) {
+		return call(url, method, body, null);
+	}
+
+	/**
+	 * @param response receives the body of a successful response, null to discard it
+	 * @return the status, -1 when the call failed without one
+	 */
+	static int call(String url, String method, String body, ByteArrayOutputStream response) {
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+			connection.setRequestMethod(method);
+			connection.setConnectTimeout(TIMEOUT_MILLIS);
+			connection.setReadTimeout(TIMEOUT_MILLIS);
+			if (body != null) {
+				connection.setDoOutput(true);
+				connection.setRequestProperty("Content-Type", "application/json");
+				try (OutputStream out = connection.getOutputStream()) {
+					out.write(body.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			int status = connection.getResponseCode();
+			try (InputStream in = status < 400 ? connection.getInputStream()
+					: connection.getErrorStream()) {
+				if (in != null) {
+					byte[] buffer = new byte[8192];
+					for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+						// Drained either way, so the connection is reused
+						if (response != null && status < 400) {
+							response.write(buffer, 0, read);
+						}
+					}
+				}
+			}
+			return status;
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+}
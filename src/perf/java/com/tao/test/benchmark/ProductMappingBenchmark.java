@@ -0,0 +1,55 @@
+package com.tao.test.benchmark;
+
+import com.tao.test.config.PerfDataSeeder;
+import com.tao.test.domain.Product;
+import com.tao.test.domain.TimeOrderedUuidGenerator;
+import com.tao.test.domain.dto.ProductDTO;
+import com.tao.test.domain.enums.Status;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Entity to DTO mapping of a page of products, without Spring or a database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductMappingBenchmark {
+
+	@Param({"20", "1000"})
+	int pageSize;
+
+	private List<Product> products;
+
+	@Setup
+	public void setUp() {
+		this.products = new ArrayList<>(this.pageSize);
+		for (int i = 0; i < this.pageSize; i++) {
+			Product product = new Product(PerfDataSeeder.WORDS[i % PerfDataSeeder.WORDS.length]
+					+ " " + i, 10 + i, Status.ACTIVE);
+			product.setProductId(TimeOrderedUuidGenerator.next());
+			this.products.add(product);
+		}
+	}
+
+	@Benchmark
+	public Collection<ProductDTO> convert() {
+		return ProductDTO.convert(this.products);
+	}
+}
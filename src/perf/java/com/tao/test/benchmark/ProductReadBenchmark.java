@@ -0,0 +1,122 @@
+package com.tao.test.benchmark;
+
+import com.tao.test.domain.dto.ProductCursor;
+import com.tao.test.domain.dto.ProductDTO;
+import com.tao.test.service.ProductService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Listing and search reads of ProductService.
+ * searchIndex=false sends every search to the LIKE query, to compare it with the trigram index at
+ * the same volume, e.g. -p products=1000000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProductReadBenchmark {
+
+	private static final int PAGE_SIZE = 20;
+	private static final int DEEP_PAGE = 200;
+	private static final double MAX_PRICE = 10000;
+
+	@Param({"100000"})
+	int products;
+
+	@Param({"true", "false"})
+	boolean searchIndex;
+
+	private ConfigurableApplicationContext context;
+	private ProductService productService;
+	private ProductCursor deepCursor;
+	private Date epoch;
+	private Date now;
+	private Date lastQuarter;
+
+	@Setup
+	public void setUp() {
+		this.context = BenchmarkApplication.start("app.perf.products=" + this.products,
+				"app.search.index.enabled=" + this.searchIndex);
+		this.productService = this.context.getBean(ProductService.class);
+		List<ProductDTO> previous = new ArrayList<>(
+				this.productService.fetchAllActiveProducts(DEEP_PAGE - 1, PAGE_SIZE));
+		this.deepCursor = ProductCursor.after(previous.get(previous.size() - 1));
+		this.epoch = new Date(0);
+		this.now = new Date();
+		this.lastQuarter = new Date(this.now.getTime() - TimeUnit.DAYS.toMillis(90));
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public Collection<ProductDTO> listFirstPage() {
+		return this.productService.fetchAllActiveProducts(1, PAGE_SIZE);
+	}
+
+	@Benchmark
+	public Collection<ProductDTO> listDeepPage() {
+		return this.productService.fetchAllActiveProducts(DEEP_PAGE, PAGE_SIZE);
+	}
+
+	@Benchmark
+	public Collection<ProductDTO> listDeepPageByCursor() {
+		return this.productService.fetchAllActiveProducts(this.deepCursor, PAGE_SIZE);
+	}
+
+	@Benchmark
+	public Collection<ProductDTO> searchByName() {
+		return this.productService.searchProducts("amber", 0, MAX_PRICE, this.epoch, this.now, 1,
+				PAGE_SIZE);
+	}
+
+	@Benchmark
+	public Collection<ProductDTO> searchByRareName() {
+		return this.productService.searchProducts("12345", 0, MAX_PRICE, this.epoch, this.now, 1,
+				PAGE_SIZE);
+	}
+
+	@Benchmark
+	public Collection<ProductDTO> searchByNameAndPrice() {
+		return this.productService.searchProducts("cobalt", 100, 500, this.epoch, this.now, 1,
+				PAGE_SIZE);
+	}
+
+	@Benchmark
+	public Collection<ProductDTO> searchByNameAndDate() {
+		return this.productService.searchProducts("maple", 0, MAX_PRICE, this.lastQuarter, this.now,
+				1, PAGE_SIZE);
+	}
+
+	@Benchmark
+	public Collection<ProductDTO> searchShortName() {
+		return this.productService.searchProducts("on", 0, MAX_PRICE, this.epoch, this.now, 1,
+				PAGE_SIZE);
+	}
+
+	@Benchmark
+	public Collection<ProductDTO> fetchApprovalQueue() {
+		return this.productService.fetchApprovalQueue(1, PAGE_SIZE);
+	}
+}
@@ -0,0 +1,133 @@
+package com.tao.test.benchmark;
+
+import com.tao.test.domain.Product;
+import com.tao.test.domain.dto.ProductDTO;
+import com.tao.test.domain.dto.ProductUpdateDTO;
+import com.tao.test.domain.enums.Status;
+import com.tao.test.repository.ApprovalQueueRepository;
+import com.tao.test.service.ApprovalOutboxDispatcher;
+import com.tao.test.service.ProductService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Single product writes of ProductService: creates on both sides of app.max.auto-approve.price,
+ * updates with and without a price jump, and approving or rejecting a queued product.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProductWriteBenchmark {
+
+	@Param({"100000"})
+	int products;
+
+	private ConfigurableApplicationContext context;
+	private ProductService productService;
+	private ApprovalQueueRepository approvalQueueRepository;
+	private ApprovalOutboxDispatcher approvalOutboxDispatcher;
+	private double autoApprovePrice;
+	private List<String> activeProductIds;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		this.context = BenchmarkApplication.start("app.perf.products=" + this.products);
+		this.productService = this.context.getBean(ProductService.class);
+		this.approvalQueueRepository = this.context.getBean(ApprovalQueueRepository.class);
+		this.approvalOutboxDispatcher = this.context.getBean(ApprovalOutboxDispatcher.class);
+		this.autoApprovePrice = this.context.getEnvironment().getRequiredProperty(
+				"app.max.auto-approve.price", Double.class);
+		this.activeProductIds = new ArrayList<>();
+		for (ProductDTO product : this.productService.fetchAllActiveProducts(1, 1000)) {
+			this.activeProductIds.add(product.getProductId().toString());
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public Product createAtAutoApprovePrice() {
+		return this.productService.createProduct(product("onyx", this.autoApprovePrice));
+	}
+
+	@Benchmark
+	public Product createAboveAutoApprovePrice() {
+		return this.productService.createProduct(product("quartz", this.autoApprovePrice + 1));
+	}
+
+	@Benchmark
+	public Product updateProduct() {
+		// Alternates between two prices that never count as a price jump
+		return this.productService.updateProduct(nextProductId(), product("sable", 100 + (this.next & 1)));
+	}
+
+	@Benchmark
+	public Product updateProductWithPriceJump() {
+		String productId = nextProductId();
+		this.productService.updateProduct(productId, product("sable", 10));
+		return this.productService.updateProduct(productId, product("sable", 1000));
+	}
+
+	@Benchmark
+	public Product approveProduct(QueuedProduct queued) {
+		return this.productService.approveProduct(queued.approvalId);
+	}
+
+	@Benchmark
+	public Product rejectProduct(QueuedProduct queued) {
+		return this.productService.rejectProduct(queued.approvalId);
+	}
+
+	private String nextProductId() {
+		return this.activeProductIds.get(this.next++ % this.activeProductIds.size());
+	}
+
+	private static ProductUpdateDTO product(String name, double price) {
+		ProductUpdateDTO product = new ProductUpdateDTO();
+		product.setName(name);
+		product.setPrice(price);
+		product.setStatus(Status.ACTIVE);
+		return product;
+	}
+
+	/**
+	 * A freshly queued product per invocation, created outside the measured call
+	 */
+	@State(Scope.Thread)
+	public static class QueuedProduct {
+
+		String approvalId;
+
+		@Setup(Level.Invocation)
+		public void queue(ProductWriteBenchmark benchmark) {
+			Product product = benchmark.productService.createProduct(
+					product("tundra", benchmark.autoApprovePrice + 1));
+			// With app.approval.enqueue=OUTBOX the queue entry is only written by the dispatcher
+			benchmark.approvalOutboxDispatcher.dispatch();
+			this.approvalId = benchmark.approvalQueueRepository.findByProductId(product.getProductId())
+					.get().getApprovalId().toString();
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package com.tao.test.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.UUID;
+import javax.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class ReplicaRoutingDataSourceTest {
+
+	/** Waits of the replicas expected to fail, the first connection to H2 can take longer */
+	private static final long REPLICA_TIMEOUT_MILLIS = 250;
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final HikariDataSource primary = database("primary", TIMEOUT_MILLIS);
+
+	private ReplicaRoutingDataSource router;
+	private JdbcTemplate jdbcTemplate;
+	private DataSourceTransactionManager transactionManager;
+
+	@AfterEach
+	void close() {
+		if (this.router != null) {
+			this.router.close();
+		} else {
+			this.primary.close();
+		}
+	}
+
+	@Test
+	void readOnlyTransactionReadsTheReplica() {
+		route(database("replica", TIMEOUT_MILLIS));
+
+		assertEquals("replica", read(true));
+		assertEquals(1, reads("replica"));
+		assertEquals(0, reads("primary"));
+	}
+
+	@Test
+	void writesAndReadWriteTransactionsGoToThePrimary() {
+		HikariDataSource replica = database("replica", TIMEOUT_MILLIS);
+		route(replica);
+
+		assertEquals("primary", read(false));
+		transaction(false).executeWithoutResult(status -> this.jdbcTemplate
+				.update("insert into source (name) values ('written')"));
+		assertEquals(2, count(this.primary));
+		assertEquals(1, count(replica));
+	}
+
+	@Test
+	void pinnedReadsGoToThePrimary() throws Exception {
+		route(database("replica", TIMEOUT_MILLIS));
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/products");
+		request.setCookies(new Cookie(ReadYourWrites.COOKIE,
+				Long.toString(System.currentTimeMillis() + 60000)));
+		String[] read = new String[1];
+
+		new ReadYourWrites(5000).doFilter(request, new MockHttpServletResponse(),
+				(req, res) -> read[0] = read(true));
+		assertEquals("primary", read[0]);
+		assertEquals(1, reads("primary"));
+		assertEquals("replica", read(true));
+	}
+
+	@Test
+	void deadReplicaFallsBackToThePrimaryAndLeavesRotation() {
+		// Nothing listens on port 1, every connection attempt is refused
+		HikariDataSource replica = pool("jdbc:h2:tcp://localhost:1/mem:gone",
+				REPLICA_TIMEOUT_MILLIS);
+		replica.setPoolName("gone");
+		route(replica);
+
+		assertEquals("primary", read(true));
+		assertEquals(0, healthy());
+		assertEquals(1, reads("primary"));
+	}
+
+	@Test
+	void busyReplicaFallsBackToThePrimaryButStaysInRotation() throws Exception {
+		HikariDataSource replica = database("replica", REPLICA_TIMEOUT_MILLIS);
+		route(replica);
+
+		try (Connection held = replica.getConnection()) {
+			assertEquals("primary", read(true));
+			assertEquals(1, healthy());
+		}
+		assertEquals("replica", read(true));
+	}
+
+	private void route(HikariDataSource replica) {
+		this.router = new ReplicaRoutingDataSource(this.primary, Collections.singletonList(replica));
+		this.router.bindTo(this.meterRegistry);
+		LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(this.router);
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transactionManager = new DataSourceTransactionManager(dataSource);
+	}
+
+	private String read(boolean readOnly) {
+		return transaction(readOnly).execute(status -> this.jdbcTemplate
+				.queryForObject("select name from source", String.class));
+	}
+
+	private TransactionTemplate transaction(boolean readOnly) {
+		TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+		transaction.setReadOnly(readOnly);
+		return transaction;
+	}
+
+	private double reads(String target) {
+		return this.meterRegistry.get("product.datasource.reads").tag("target", target)
+				.functionCounter().count();
+	}
+
+	private double healthy() {
+		return this.meterRegistry.get("product.datasource.replica.healthy").gauge().value();
+	}
+
+	private static int count(HikariDataSource dataSource) {
+		return new JdbcTemplate(dataSource).queryForObject("select count(*) from source",
+				Integer.class);
+	}
+
+	/**
+	 * @return pool on a fresh in-memory database whose only row is its name
+	 */
+	private static HikariDataSource database(String name, long connectionTimeout) {
+		HikariDataSource dataSource = pool("jdbc:h2:mem:" + name + "-" + UUID.randomUUID()
+				+ ";DB_CLOSE_DELAY=-1", connectionTimeout);
+		dataSource.setPoolName(name);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table source (name varchar(16))");
+		jdbcTemplate.update("insert into source (name) values (?)", name);
+		return dataSource;
+	}
+
+	private static HikariDataSource pool(String url, long connectionTimeout) {
+		HikariDataSource dataSource = new HikariDataSource();
+		dataSource.setJdbcUrl(url);
+		dataSource.setMaximumPoolSize(1);
+		dataSource.setConnectionTimeout(connectionTimeout);
+		dataSource.setInitializationFailTimeout(-1);
+		return dataSource;
+	}
+}
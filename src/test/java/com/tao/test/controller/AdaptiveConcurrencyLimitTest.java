@@ -0,0 +1,104 @@
+package com.tao.test.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimitTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(10);
+
+	@Test
+	void initialLimitIsKeptWithinMinAndMax() {
+		assertEquals(20, limit(50, 1, 20).limit());
+		assertEquals(5, limit(2, 5, 20).limit());
+	}
+
+	@Test
+	void refusesOnceTheLimitIsInFlightUntilReleased() {
+		AdaptiveConcurrencyLimit limit = limit(2, 1, 10);
+		assertTrue(limit.tryAcquire());
+		assertTrue(limit.tryAcquire());
+		assertFalse(limit.tryAcquire());
+
+		limit.release(-1);
+		assertEquals(1, limit.inFlight());
+		assertTrue(limit.tryAcquire());
+	}
+
+	@Test
+	void unmeasuredReleaseLeavesTheLimit() {
+		AdaptiveConcurrencyLimit limit = limit(10, 1, 100);
+		acquire(limit, 10);
+		limit.release(-1);
+		assertEquals(10, limit.limit());
+	}
+
+	@Test
+	void growsWhileFastAndInUse() {
+		AdaptiveConcurrencyLimit limit = limit(10, 1, 100);
+		acquire(limit, 10);
+		limit.release(FAST);
+		assertTrue(limit.limit() > 10);
+	}
+
+	@Test
+	void neverGrowsPastMax() {
+		AdaptiveConcurrencyLimit limit = limit(10, 1, 12);
+		for (int i = 0; i < 100; i++) {
+			int slots = (int) limit.limit();
+			acquire(limit, slots);
+			for (int j = 0; j < slots; j++) {
+				limit.release(FAST);
+			}
+		}
+		assertEquals(12, limit.limit());
+	}
+
+	@Test
+	void fastAnswersBelowHalfTheLimitDoNotGrowIt() {
+		AdaptiveConcurrencyLimit limit = limit(10, 1, 100);
+		acquire(limit, 1);
+		limit.release(FAST);
+		assertEquals(10, limit.limit());
+	}
+
+	@Test
+	void shrinksWhenLatencyClimbsAboveTheBaseline() {
+		AdaptiveConcurrencyLimit limit = limit(10, 1, 100);
+		acquire(limit, 10);
+		limit.release(FAST);
+		double grown = limit.limit();
+
+		limit.release(SLOW);
+		assertTrue(limit.limit() < grown);
+	}
+
+	@Test
+	void backoffCutsByATenthDownToMinAndKeepsTheSlot() {
+		AdaptiveConcurrencyLimit limit = limit(10, 8, 100);
+		acquire(limit, 1);
+
+		limit.backoff();
+		assertEquals(9, limit.limit(), 1e-9);
+		assertEquals(1, limit.inFlight());
+
+		limit.backoff();
+		limit.backoff();
+		assertEquals(8, limit.limit());
+	}
+
+	private static AdaptiveConcurrencyLimit limit(int initial, int min, int max) {
+		return new AdaptiveConcurrencyLimit(initial, min, max, 2.0, 0.2, 500);
+	}
+
+	private static void acquire(AdaptiveConcurrencyLimit limit, int slots) {
+		for (int i = 0; i < slots; i++) {
+			assertTrue(limit.tryAcquire());
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package com.tao.test.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.tao.test.domain.Product;
+import com.tao.test.domain.dto.ProductUpdateDTO;
+import com.tao.test.domain.enums.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+class ProductUpdateCoalescerTest {
+
+	private final String productId = UUID.randomUUID().toString();
+	private final ProductService productService = mock(ProductService.class);
+
+	@Test
+	void passesThroughWhenDisabled() {
+		ProductUpdateCoalescer coalescer = coalescer(false, 5);
+		ProductUpdateDTO update = update("a");
+		Product written = new Product("a", 10, Status.ACTIVE);
+		when(this.productService.updateProduct(this.productId, update, null)).thenReturn(written);
+
+		assertSame(written, coalescer.update(this.productId, update, null));
+	}
+
+	@Test
+	void neverMergesUpdatesWithAnExpectedVersion() {
+		ProductUpdateCoalescer coalescer = coalescer(true, 5);
+		ProductUpdateDTO update = update("a");
+		Product written = new Product("a", 10, Status.ACTIVE);
+		when(this.productService.updateProduct(this.productId, update, 3L)).thenReturn(written);
+
+		assertSame(written, coalescer.update(this.productId, update, 3L));
+	}
+
+	@Test
+	void writesTheLastUpdateOfAWindowOnceForAllCallers() throws Exception {
+		ProductUpdateCoalescer coalescer = coalescer(true, 500);
+		List<String> written = recordWrites(null, null);
+
+		CompletableFuture<Product> first = async(() -> coalescer.update(this.productId,
+				update("a"), null));
+		TimeUnit.MILLISECONDS.sleep(100);
+		Product second = coalescer.update(this.productId, update("b"), null);
+
+		assertSame(second, first.get(5, TimeUnit.SECONDS));
+		assertEquals(Collections.singletonList("b"), written);
+		verify(this.productService, times(1)).updateProduct(eq(this.productId), any(), isNull());
+	}
+
+	@Test
+	void writesBatchesOfOneProductInOpeningOrder() throws Exception {
+		ProductUpdateCoalescer coalescer = coalescer(true, 20);
+		CountDownLatch firstWriting = new CountDownLatch(1);
+		CountDownLatch releaseFirst = new CountDownLatch(1);
+		List<String> written = recordWrites(firstWriting, releaseFirst);
+
+		CompletableFuture<Product> first = async(() -> coalescer.update(this.productId,
+				update("a"), null));
+		assertTrue(firstWriting.await(5, TimeUnit.SECONDS));
+		// Opens the next batch while the first one is still writing
+		CompletableFuture<Product> second = async(() -> coalescer.update(this.productId,
+				update("b"), null));
+		TimeUnit.MILLISECONDS.sleep(200);
+		assertEquals(Collections.singletonList("a"), written);
+
+		releaseFirst.countDown();
+		assertEquals("a", first.get(5, TimeUnit.SECONDS).getName());
+		assertEquals("b", second.get(5, TimeUnit.SECONDS).getName());
+		assertEquals(Arrays.asList("a", "b"), written);
+	}
+
+	@Test
+	void laterBatchStillWritesAfterTheOneBeforeFailed() throws Exception {
+		ProductUpdateCoalescer coalescer = coalescer(true, 20);
+		CountDownLatch firstWriting = new CountDownLatch(1);
+		CountDownLatch releaseFirst = new CountDownLatch(1);
+		List<String> written = new CopyOnWriteArrayList<>();
+		when(this.productService.updateProduct(eq(this.productId), any(), isNull()))
+				.thenAnswer(invocation -> {
+					ProductUpdateDTO update = invocation.getArgument(1);
+					if (update.getName().equals("a")) {
+						firstWriting.countDown();
+						releaseFirst.await();
+						throw new IllegalStateException("failed");
+					}
+					written.add(update.getName());
+					return new Product(update.getName(), update.getPrice(), update.getStatus());
+				});
+
+		CompletableFuture<Product> first = async(() -> coalescer.update(this.productId,
+				update("a"), null));
+		assertTrue(firstWriting.await(5, TimeUnit.SECONDS));
+		CompletableFuture<Product> second = async(() -> coalescer.update(this.productId,
+				update("b"), null));
+		releaseFirst.countDown();
+
+		assertEquals("b", second.get(5, TimeUnit.SECONDS).getName());
+		assertTrue(first.handle((product, e) -> e != null).get(5, TimeUnit.SECONDS));
+		assertEquals(Collections.singletonList("b"), written);
+	}
+
+	private ProductUpdateCoalescer coalescer(boolean enabled, long windowMillis) {
+		return new ProductUpdateCoalescer(this.productService, new SimpleMeterRegistry(), enabled,
+				windowMillis);
+	}
+
+	/**
+	 * @return names of the written updates in write order, the first write waits for release
+	 */
+	private List<String> recordWrites(CountDownLatch firstWriting, CountDownLatch release) {
+		List<String> written = new CopyOnWriteArrayList<>();
+		when(this.productService.updateProduct(eq(this.productId), any(), isNull()))
+				.thenAnswer(invocation -> {
+					ProductUpdateDTO update = invocation.getArgument(1);
+					written.add(update.getName());
+					if (firstWriting != null && firstWriting.getCount() > 0) {
+						firstWriting.countDown();
+						release.await();
+					}
+					return new Product(update.getName(), update.getPrice(), update.getStatus());
+				});
+		return written;
+	}
+
+	private static CompletableFuture<Product> async(Supplier<Product> update) {
+		return CompletableFuture.supplyAsync(update, runnable -> {
+			Thread thread = new Thread(runnable);
+			thread.setDaemon(true);
+			thread.start();
+		});
+	}
+
+	private static ProductUpdateDTO update(String name) {
+		ProductUpdateDTO update = new ProductUpdateDTO();
+		update.setName(name);
+		update.setPrice(10);
+		update.setStatus(Status.ACTIVE);
+		return update;
+	}
+}
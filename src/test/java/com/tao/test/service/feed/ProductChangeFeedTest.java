@@ -0,0 +1,165 @@
+package com.tao.test.service.feed;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.tao.test.domain.dto.ProductChangeDTO;
+import com.tao.test.domain.dto.ProductChangesDTO;
+import com.tao.test.domain.enums.ChangeType;
+import com.tao.test.domain.enums.Status;
+import com.tao.test.service.event.ProductChangedEvent;
+import com.tao.test.service.event.ProductSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.context.request.async.DeferredResult;
+
+class ProductChangeFeedTest {
+
+	private static final int CAPACITY = 5;
+	private static final int MAX_BATCH = 3;
+
+	private final ProductChangeFeed feed = feed();
+
+	@AfterEach
+	void shutdown() {
+		this.feed.shutdown();
+	}
+
+	@Test
+	void numbersChangesInCommitOrderFromTheEpochOfTheInstance() {
+		List<UUID> ids = publish(2);
+		long last = last();
+
+		ProductChangesDTO changes = poll(last - 2);
+		assertFalse(changes.isResync());
+		assertEquals(last, changes.getNext());
+		assertEquals(2, changes.getChanges().size());
+		for (int i = 0; i < 2; i++) {
+			ProductChangeDTO change = changes.getChanges().get(i);
+			assertEquals(last - 1 + i, change.getSeq());
+			assertEquals(ids.get(i), change.getProductId());
+			assertEquals(ChangeType.UPDATED, change.getType());
+		}
+		assertEquals(0, (last - 2) % (1L << 32), "numbering starts at the epoch");
+		assertTrue(last > 0 && last < 1L << 53);
+	}
+
+	@Test
+	void returnsAtMostMaxBatchChangesAndContinuesFromNext() {
+		publish(5);
+		long last = last();
+
+		ProductChangesDTO first = poll(last - 5);
+		assertEquals(MAX_BATCH, first.getChanges().size());
+		assertEquals(last - 5 + MAX_BATCH, first.getNext());
+
+		ProductChangesDTO second = poll(first.getNext());
+		assertEquals(2, second.getChanges().size());
+		assertEquals(last, second.getNext());
+		assertEquals(first.getNext() + 1, second.getChanges().get(0).getSeq());
+	}
+
+	@Test
+	void asksForAResyncOnceSinceFellOutOfTheFeed() {
+		publish(CAPACITY + 2);
+		long last = last();
+
+		assertFalse(poll(last - CAPACITY).isResync());
+		ProductChangesDTO changes = poll(last - CAPACITY - 1);
+		assertTrue(changes.isResync());
+		assertEquals(last, changes.getNext());
+		assertTrue(changes.getChanges().isEmpty());
+	}
+
+	@Test
+	void asksForAResyncForACursorAheadOfTheFeed() {
+		publish(1);
+		long last = last();
+
+		ProductChangesDTO changes = poll(last + 1);
+		assertTrue(changes.isResync());
+		assertEquals(last, changes.getNext());
+	}
+
+	@Test
+	void asksForAResyncForACursorOfAnotherInstance() {
+		ProductChangeFeed other = feed();
+		try {
+			publish(1);
+			other.onProductChanged(event(UUID.randomUUID()));
+			long foreign = ((ProductChangesDTO) other.poll(0L).getResult()).getNext();
+
+			ProductChangesDTO changes = poll(foreign);
+			assertTrue(changes.isResync());
+			assertEquals(last(), changes.getNext());
+		} finally {
+			other.shutdown();
+		}
+	}
+
+	@Test
+	void waitingPollGetsTheNextChange() throws Exception {
+		publish(1);
+		long last = last();
+
+		DeferredResult<ProductChangesDTO> result = this.feed.poll(last);
+		assertFalse(result.hasResult());
+		UUID id = publish(1).get(0);
+
+		ProductChangesDTO changes = await(result);
+		assertEquals(last + 1, changes.getNext());
+		assertEquals(1, changes.getChanges().size());
+		assertEquals(id, changes.getChanges().get(0).getProductId());
+	}
+
+	/**
+	 * @return seq of the newest change, from the resync of a cursor older than the feed
+	 */
+	private long last() {
+		ProductChangesDTO resync = poll(0);
+		assertTrue(resync.isResync());
+		return resync.getNext();
+	}
+
+	private ProductChangesDTO poll(long since) {
+		DeferredResult<ProductChangesDTO> result = this.feed.poll(since);
+		assertTrue(result.hasResult());
+		return (ProductChangesDTO) result.getResult();
+	}
+
+	private static ProductChangesDTO await(DeferredResult<ProductChangesDTO> result)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!result.hasResult() && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertTrue(result.hasResult());
+		return (ProductChangesDTO) result.getResult();
+	}
+
+	private List<UUID> publish(int count) {
+		List<UUID> ids = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			UUID id = UUID.randomUUID();
+			this.feed.onProductChanged(event(id));
+			ids.add(id);
+		}
+		return ids;
+	}
+
+	private static ProductChangedEvent event(UUID id) {
+		ProductSnapshot product = new ProductSnapshot(id, "p", 10, Status.ACTIVE, 1, 2);
+		return new ProductChangedEvent(ChangeType.UPDATED, product, product);
+	}
+
+	private static ProductChangeFeed feed() {
+		return new ProductChangeFeed(new SimpleMeterRegistry(), CAPACITY, MAX_BATCH, 30000, 60000,
+				100, 1);
+	}
+}
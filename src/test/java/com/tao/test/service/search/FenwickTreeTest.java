@@ -0,0 +1,70 @@
+package com.tao.test.service.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class FenwickTreeTest {
+
+	@Test
+	void prefixAndRangeMatchPlainSums() {
+		int size = 100;
+		FenwickTree tree = new FenwickTree(size);
+		long[] counts = new long[size];
+		Random random = new Random(42);
+		for (int i = 0; i < 1000; i++) {
+			int slot = random.nextInt(size);
+			int delta = random.nextInt(7) - 2;
+			tree.add(slot, delta);
+			counts[slot] += delta;
+		}
+
+		long sum = 0;
+		for (int slot = 0; slot < size; slot++) {
+			sum += counts[slot];
+			assertEquals(sum, tree.prefix(slot));
+		}
+		for (int from = 0; from < size; from += 7) {
+			for (int to = from; to < size; to += 11) {
+				long expected = 0;
+				for (int slot = from; slot <= to; slot++) {
+					expected += counts[slot];
+				}
+				assertEquals(expected, tree.range(from, to));
+			}
+		}
+	}
+
+	@Test
+	void prefixIsZeroBeforeTheFirstSlotAndTheTotalPastTheLast() {
+		FenwickTree tree = new FenwickTree(10);
+		tree.add(0, 3);
+		tree.add(9, 4);
+
+		assertEquals(0, tree.prefix(-1));
+		assertEquals(7, tree.prefix(9));
+		assertEquals(7, tree.prefix(100));
+	}
+
+	@Test
+	void emptyRangeIsZero() {
+		FenwickTree tree = new FenwickTree(10);
+		tree.add(5, 1);
+
+		assertEquals(0, tree.range(6, 5));
+		assertEquals(1, tree.range(5, 5));
+	}
+
+	@Test
+	void clearResetsEverySlot() {
+		FenwickTree tree = new FenwickTree(8);
+		for (int slot = 0; slot < tree.size(); slot++) {
+			tree.add(slot, slot + 1);
+		}
+
+		tree.clear();
+		assertEquals(8, tree.size());
+		assertEquals(0, tree.prefix(7));
+	}
+}